@@ -19,3 +19,25 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
 #-renamesourcefileattribute SourceFile
+
+# LPermission looks up <Class>_PermissionDispatcher by the name of the class that declares the
+# callbacks, and falls back to reflection on the annotated methods.
+-keep class * implements com.lewis.lpermission.permission.PermissionDispatcher { <init>(); }
+-keepclasseswithmembernames class * {
+    @com.lewis.lpermission.permission.PermissionGranted <methods>;
+}
+-keepclasseswithmembernames class * {
+    @com.lewis.lpermission.permission.PermissionDenied <methods>;
+}
+-keepclasseswithmembernames class * {
+    @com.lewis.lpermission.permission.PermissionRationale <methods>;
+}
+-keepclasseswithmembernames class * {
+    @com.lewis.lpermission.permission.PermissionNeverAskAgain <methods>;
+}
+-keepclassmembers class * {
+    @com.lewis.lpermission.permission.PermissionGranted <methods>;
+    @com.lewis.lpermission.permission.PermissionDenied <methods>;
+    @com.lewis.lpermission.permission.PermissionRationale <methods>;
+    @com.lewis.lpermission.permission.PermissionNeverAskAgain <methods>;
+}
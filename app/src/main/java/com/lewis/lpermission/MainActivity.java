@@ -290,25 +290,7 @@ public class MainActivity extends AppCompatActivity
             }
             // END_INCLUDE(permission_result)
 
-        } else if (requestCode == REQUEST_CONTACTS) {
-            Log.i(TAG, "Received response for contact permissions request.");
-
-//            // We have requested multiple permissions for contacts, so all of them need to be
-//            // checked.
-//            if (PermissionUtil.verifyPermissions(grantResults)) {
-//                // All required permissions have been granted, display contacts fragment.
-//                Snackbar.make(mLayout, R.string.permision_available_contacts,
-//                        Snackbar.LENGTH_SHORT)
-//                        .show();
-//            } else {
-//                Log.i(TAG, "Contacts permissions were NOT granted.");
-//                Snackbar.make(mLayout, R.string.permissions_not_granted,
-//                        Snackbar.LENGTH_SHORT)
-//                        .show();
-//            }
-            LPermission.onPermissionResult(this, REQUEST_CONTACTS, permissions, grantResults);
-
-        }else {
+        } else {
             super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         }
     }
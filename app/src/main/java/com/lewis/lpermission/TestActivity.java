@@ -2,7 +2,6 @@ package com.lewis.lpermission;
 
 import android.Manifest;
 import android.os.Bundle;
-import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
@@ -44,12 +43,6 @@ public class TestActivity extends AppCompatActivity {
                 .request();
     }
 
-    @Override
-    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
-        LPermission.onPermissionResult(this, requestCode, permissions, grantResults);
-        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
-    }
-
     /**
      * 成功、已经有权限的操作都在这儿
      */
@@ -0,0 +1,73 @@
+package com.lewis.lpermission.google.camera;
+
+import android.app.Activity;
+import android.hardware.Camera;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: the android.hardware.Camera backend, a {@link CameraSession} shown by a
+ * {@link CameraPreview}
+ */
+
+final class Camera1Backend extends CameraBackend {
+
+    private final int mCameraId;
+    private final CameraSession mSession = new CameraSession();
+    private CameraPreview mPreview;
+    private CameraPreview.FrameConsumer mConsumer;
+    private PreviewSelector mSelector = PreviewSelector.DEFAULT;
+
+    Camera1Backend(int cameraId) {
+        this.mCameraId = cameraId;
+    }
+
+    @Override
+    public void open(@NonNull final Activity activity, @NonNull final Callback callback) {
+        close();
+        mSession.open(mCameraId, new CameraSession.Callback() {
+            @Override
+            public void onOpened(@NonNull Camera camera, @NonNull Camera.CameraInfo cameraInfo) {
+                // Get the rotation of the screen to adjust the preview image accordingly.
+                int displayRotation = activity.getWindowManager().getDefaultDisplay().getRotation();
+                mPreview = new CameraPreview(activity, camera, cameraInfo, displayRotation, mCameraId);
+                mPreview.setPreviewSelector(mSelector);
+                mPreview.setFrameConsumer(mConsumer);
+                callback.onOpened(mPreview);
+            }
+
+            @Override
+            public void onUnavailable() {
+                callback.onUnavailable();
+            }
+        });
+    }
+
+    @Override
+    public void setFrameConsumer(@Nullable CameraPreview.FrameConsumer consumer) {
+        mConsumer = consumer;
+        if (mPreview != null) {
+            mPreview.setFrameConsumer(consumer);
+        }
+    }
+
+    @Override
+    public void setPreviewSelector(@NonNull PreviewSelector selector) {
+        mSelector = selector;
+        if (mPreview != null) {
+            mPreview.setPreviewSelector(selector);
+        }
+    }
+
+    @Override
+    public void close() {
+        // the preview must stop using the camera before it is released
+        if (mPreview != null) {
+            mPreview.detach();
+            mPreview = null;
+        }
+        mSession.close();
+    }
+}
@@ -0,0 +1,376 @@
+package com.lewis.lpermission.google.camera;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.Range;
+import android.util.Size;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: the Camera2 backend. The device and its capture session live on a thread of their
+ * own, the preview is a {@link SurfaceView} and frames are analyzed through an
+ * {@link ImageFrameReader}, as a second output of the same session. The buffers of the view get
+ * the size chosen by the {@link PreviewSelector} for the size of the view
+ */
+
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+final class Camera2Backend extends CameraBackend implements SurfaceHolder.Callback {
+
+    private static final String TAG = "Camera2Backend";
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final CameraManager mManager;
+    private final String mCameraId;
+    private CameraPreview.FrameConsumer mConsumer;
+    private PreviewSelector mSelector = PreviewSelector.DEFAULT;
+    private CameraThread mThread;
+    private SurfaceView mPreview;
+    private Surface mSurface;
+    /**
+     * selection the session was started with
+     */
+    private PreviewSelector.Selection mSelection;
+
+    Camera2Backend(Context context, String cameraId) {
+        this.mManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        this.mCameraId = cameraId;
+    }
+
+    @Override
+    public void open(@NonNull Activity activity, @NonNull Callback callback) {
+        close();
+        mThread = new CameraThread(activity, callback);
+        mThread.start();
+        mThread.mHandler = new Handler(mThread.getLooper());
+        mThread.mHandler.post(mThread.mOpen);
+    }
+
+    @Override
+    public void setFrameConsumer(@Nullable CameraPreview.FrameConsumer consumer) {
+        mConsumer = consumer;
+        startSession();
+    }
+
+    @Override
+    public void setPreviewSelector(@NonNull PreviewSelector selector) {
+        mSelector = selector;
+    }
+
+    @Override
+    public void close() {
+        if (mThread == null) {
+            return;
+        }
+        final CameraThread thread = mThread;
+        mThread = null;
+        thread.mClosed = true;
+        if (mPreview != null) {
+            mPreview.getHolder().removeCallback(this);
+            mPreview = null;
+        }
+        mSurface = null;
+        mSelection = null;
+        thread.mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                thread.release();
+                thread.quitSafely();
+            }
+        });
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        // the session starts once the buffers have their size
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        PreviewSelector.Selection selection = select(mPreview.getWidth(), mPreview.getHeight());
+        if (width != selection.width || height != selection.height) {
+            // changes the surface again, the view scales the buffers
+            holder.setFixedSize(selection.width, selection.height);
+            return;
+        }
+        if (holder.getSurface() == mSurface && selection == mSelection) {
+            return;
+        }
+        mSurface = holder.getSurface();
+        mSelection = selection;
+        startSession();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        mSurface = null;
+        mSelection = null;
+        final CameraThread thread = mThread;
+        if (thread != null) {
+            thread.mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    thread.closeSession();
+                }
+            });
+        }
+    }
+
+    /**
+     * (re)start the capture session once the preview surface exists
+     */
+    private void startSession() {
+        final CameraThread thread = mThread;
+        final Surface surface = mSurface;
+        final PreviewSelector.Selection selection = mSelection;
+        if (thread == null || surface == null) {
+            return;
+        }
+        final CameraPreview.FrameConsumer consumer = mConsumer;
+        thread.mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                thread.startSession(surface, consumer, selection);
+            }
+        });
+    }
+
+    /**
+     * the selection for the size of the view, the supported values were read when the camera
+     * was opened
+     */
+    private PreviewSelector.Selection select(int width, int height) {
+        PreviewSelector.Selection selection = mSelector.get(mCameraId, PreviewSelector.CAMERA2_FPS_SCALE, width, height);
+        if (selection != null) {
+            return selection;
+        }
+        Size[] sizes = mThread.mSizes;
+        int[] widths = new int[sizes.length];
+        int[] heights = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            widths[i] = sizes[i].getWidth();
+            heights[i] = sizes[i].getHeight();
+        }
+        Range<Integer>[] ranges = mThread.mFpsRanges;
+        int count = ranges != null ? ranges.length : 0;
+        int[] mins = new int[count];
+        int[] maxs = new int[count];
+        for (int i = 0; i < count; i++) {
+            mins[i] = ranges[i].getLower();
+            maxs[i] = ranges[i].getUpper();
+        }
+        return mSelector.select(mCameraId, PreviewSelector.CAMERA2_FPS_SCALE, width, height,
+                widths, heights, mins, maxs);
+    }
+
+    /**
+     * the thread of one opened camera, the device and the session are only used on it
+     */
+    private final class CameraThread extends HandlerThread {
+
+        private final Activity mActivity;
+        private final Callback mCallback;
+        private Handler mHandler;
+        private CameraDevice mDevice;
+        /**
+         * supported preview sizes and frame rates, read on this thread and then only used on
+         * the main thread
+         */
+        private Size[] mSizes;
+        private Range<Integer>[] mFpsRanges;
+        private CameraCaptureSession mSession;
+        private ImageFrameReader mReader;
+        /**
+         * set on the main thread, nothing is delivered once closed
+         */
+        private volatile boolean mClosed;
+
+        private final Runnable mOpen = new Runnable() {
+            @Override
+            @SuppressWarnings("MissingPermission")
+            public void run() {
+                try {
+                    // the camera permission is granted before the preview is shown
+                    mManager.openCamera(mCameraId, mStateCallback, mHandler);
+                } catch (CameraAccessException | SecurityException | IllegalArgumentException e) {
+                    Log.d(TAG, "Camera " + mCameraId + " is not available: " + e.getMessage());
+                    unavailable();
+                }
+            }
+        };
+
+        private final CameraDevice.StateCallback mStateCallback = new CameraDevice.StateCallback() {
+            @Override
+            public void onOpened(@NonNull CameraDevice camera) {
+                mDevice = camera;
+                if (mClosed) {
+                    release();
+                    return;
+                }
+                try {
+                    CameraCharacteristics characteristics = mManager.getCameraCharacteristics(mCameraId);
+                    StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+                    mSizes = map != null ? map.getOutputSizes(SurfaceHolder.class) : null;
+                    mFpsRanges = characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+                } catch (CameraAccessException e) {
+                    mSizes = null;
+                }
+                if (mSizes == null || mSizes.length == 0) {
+                    release();
+                    unavailable();
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        showPreview();
+                    }
+                });
+            }
+
+            @Override
+            public void onDisconnected(@NonNull CameraDevice camera) {
+                // taken by another client, before or after it was opened
+                Log.d(TAG, "Camera " + mCameraId + " disconnected");
+                lost(camera);
+            }
+
+            @Override
+            public void onError(@NonNull CameraDevice camera, int error) {
+                Log.d(TAG, "Camera " + mCameraId + " error " + error);
+                lost(camera);
+            }
+        };
+
+        CameraThread(Activity activity, Callback callback) {
+            super(TAG);
+            this.mActivity = activity;
+            this.mCallback = callback;
+        }
+
+        /**
+         * on the main thread
+         */
+        private void showPreview() {
+            if (mClosed) return;
+            mPreview = new SurfaceView(mActivity);
+            mPreview.getHolder().addCallback(Camera2Backend.this);
+            mCallback.onOpened(mPreview);
+        }
+
+        /**
+         * the device can not be used anymore
+         */
+        private void lost(CameraDevice camera) {
+            closeSession();
+            camera.close();
+            mDevice = null;
+            unavailable();
+        }
+
+        /**
+         * reported once, nothing is delivered after it
+         */
+        private void unavailable() {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mClosed) {
+                        mClosed = true;
+                        mCallback.onUnavailable();
+                    }
+                }
+            });
+        }
+
+        void startSession(Surface surface, CameraPreview.FrameConsumer consumer,
+                          final PreviewSelector.Selection selection) {
+            closeSession();
+            if (mDevice == null || mClosed) return;
+            final List<Surface> targets = new ArrayList<>(2);
+            targets.add(surface);
+            if (consumer != null) {
+                mReader = new ImageFrameReader(consumer, selection.width, selection.height);
+                targets.add(mReader.getSurface());
+            }
+            try {
+                mDevice.createCaptureSession(targets, new CameraCaptureSession.StateCallback() {
+                    @Override
+                    public void onConfigured(@NonNull CameraCaptureSession session) {
+                        if (mDevice == null || mClosed || session.getDevice() != mDevice) {
+                            session.close();
+                            return;
+                        }
+                        mSession = session;
+                        try {
+                            CaptureRequest.Builder request = mDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+                            for (Surface target : targets) {
+                                request.addTarget(target);
+                            }
+                            if (selection.hasFpsRange) {
+                                request.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE,
+                                        new Range<>(selection.minFps, selection.maxFps));
+                            }
+                            session.setRepeatingRequest(request.build(), null, mHandler);
+                            Log.d(TAG, "Camera preview started.");
+                        } catch (CameraAccessException | IllegalStateException e) {
+                            Log.d(TAG, "Error starting camera preview: " + e.getMessage());
+                        }
+                    }
+
+                    @Override
+                    public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+                        Log.d(TAG, "Error configuring camera preview");
+                        if (mDevice != null && session.getDevice() == mDevice) {
+                            // the preview can not be shown with this camera
+                            unavailable();
+                        }
+                    }
+                }, mHandler);
+            } catch (CameraAccessException | IllegalStateException | IllegalArgumentException e) {
+                Log.d(TAG, "Error setting camera preview: " + e.getMessage());
+            }
+        }
+
+        void closeSession() {
+            if (mSession != null) {
+                mSession.close();
+                mSession = null;
+            }
+            if (mReader != null) {
+                mReader.close();
+                mReader = null;
+            }
+        }
+
+        void release() {
+            closeSession();
+            if (mDevice != null) {
+                mDevice.close();        // release the camera for other applications
+                mDevice = null;
+                Log.d(TAG, "Camera released.");
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.lewis.lpermission.google.camera;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.os.Build;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: a camera shown in a preview view. Camera2 is used from API 21 unless the device only
+ * emulates it over the old API, then android.hardware.Camera is used. Reading that support blocks,
+ * so the backend is chosen when the camera is first opened. Either way the camera is opened and
+ * closed off the main thread
+ */
+
+public abstract class CameraBackend {
+
+    /**
+     * called on the main thread
+     */
+    public interface Callback {
+
+        /**
+         * @param preview shows the camera, add it to the layout
+         */
+        void onOpened(@NonNull View preview);
+
+        /**
+         * the camera is in use or does not exist, or the opened camera was lost. Nothing is
+         * called after it
+         */
+        void onUnavailable();
+    }
+
+    /**
+     * @param context  calling context
+     * @param cameraId id of the camera, 0 is the first camera
+     * @return the backend for the camera, it does not query the camera
+     */
+    @NonNull
+    public static CameraBackend create(@NonNull Context context, int cameraId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return new SelectingBackend(context, cameraId);
+        }
+        return new Camera1Backend(cameraId);
+    }
+
+    /**
+     * blocks on the camera service, call it off the main thread
+     *
+     * @return the Camera2 id of the camera, null if it has none or only legacy support
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    @Nullable
+    static String camera2Id(Context context, int cameraId) {
+        CameraManager manager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        try {
+            String[] ids = manager.getCameraIdList();
+            if (cameraId < 0 || cameraId >= ids.length) {
+                return null;
+            }
+            Integer level = manager.getCameraCharacteristics(ids[cameraId])
+                    .get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+            return level == null || level == CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY
+                    ? null : ids[cameraId];
+        } catch (CameraAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * open the camera and start the preview, the camera opened before is closed
+     *
+     * @param activity the activity showing the preview
+     * @param callback receives the preview, not called if the backend is closed first
+     */
+    @MainThread
+    public abstract void open(@NonNull Activity activity, @NonNull Callback callback);
+
+    /**
+     * analyze the preview frames, the consumer replaces the previous one
+     *
+     * @param consumer null to stop analyzing
+     */
+    @MainThread
+    public abstract void setFrameConsumer(@Nullable CameraPreview.FrameConsumer consumer);
+
+    /**
+     * choose the preview size and frame rate, {@link PreviewSelector#DEFAULT} unless set. Applied
+     * the next time the preview starts
+     *
+     * @param selector keeps the selection of each camera
+     */
+    @MainThread
+    public abstract void setPreviewSelector(@NonNull PreviewSelector selector);
+
+    /**
+     * release the camera, the preview stops showing it
+     */
+    @MainThread
+    public abstract void close();
+}
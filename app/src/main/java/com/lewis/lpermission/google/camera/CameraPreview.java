@@ -18,17 +18,22 @@ package com.lewis.lpermission.google.camera;
 
 import android.content.Context;
 import android.hardware.Camera;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.util.Log;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Camera preview that displays a {@link Camera}.
  * <p>
- * Handles basic lifecycle methods to display and stop the preview.
+ * Handles basic lifecycle methods to display and stop the preview. Frames can be analyzed with a
+ * {@link FrameConsumer}.
  * <p>
  * Implementation is based directly on the documentation at
  * http://developer.android.com/guide/topics/media/camera.html
@@ -38,17 +43,38 @@ import java.io.IOException;
 public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback {
 
     private static final String TAG = "CameraPreview";
+
+    /**
+     * Receives preview frames on a worker thread. Frames arriving while the consumer is behind
+     * are dropped.
+     */
+    public interface FrameConsumer {
+
+        /**
+         * @param frame must be released once analyzed, its buffer is reused for the next frames
+         */
+        @WorkerThread
+        void onFrame(@NonNull PreviewFrame frame);
+    }
+
     private SurfaceHolder mHolder;
     private Camera mCamera;
     private Camera.CameraInfo mCameraInfo;
+    private String mCameraId;
     private int mDisplayOrientation;
+    private PreviewSelector mSelector = PreviewSelector.DEFAULT;
+    private FrameProcessor mFrameProcessor;
+    private boolean mPreviewing;
 
     public CameraPreview(Context context) {
-        this(context, null, null, 0);
+        this(context, null, null, 0, 0);
     }
 
+    /**
+     * @param cameraId id the camera was opened with, its preview selection is cached by it
+     */
     public CameraPreview(Context context, Camera camera, Camera.CameraInfo cameraInfo,
-            int displayOrientation) {
+            int displayOrientation, int cameraId) {
         super(context);
 
         // Do not initialise if no camera has been set
@@ -57,6 +83,7 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         }
         mCamera = camera;
         mCameraInfo = cameraInfo;
+        mCameraId = String.valueOf(cameraId);
         mDisplayOrientation = displayOrientation;
 
         // Install a SurfaceHolder.Callback so we get notified when the
@@ -100,19 +127,68 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         return result;
     }
 
+    /**
+     * Analyze the preview frames, the consumer replaces the previous one.
+     *
+     * @param consumer null to stop analyzing
+     */
+    public void setFrameConsumer(@Nullable FrameConsumer consumer) {
+        if (mFrameProcessor != null) {
+            mFrameProcessor.stop();
+        }
+        mFrameProcessor = consumer != null ? new FrameProcessor(consumer) : null;
+        if (mFrameProcessor != null && mPreviewing) {
+            mFrameProcessor.start(mCamera);
+        }
+    }
+
+    /**
+     * Choose the preview size and frame rate, applied the next time the surface changes.
+     */
+    public void setPreviewSelector(@NonNull PreviewSelector selector) {
+        mSelector = selector;
+    }
+
+    /**
+     * Stop using the camera, it is about to be released.
+     */
+    void detach() {
+        if (mHolder != null) {
+            mHolder.removeCallback(this);
+        }
+        surfaceDestroyed(mHolder);
+        mFrameProcessor = null;
+    }
+
     public void surfaceCreated(SurfaceHolder holder) {
         // The Surface has been created, now tell the camera where to draw the preview.
         try {
             mCamera.setPreviewDisplay(holder);
-            mCamera.startPreview();
-            Log.d(TAG, "Camera preview started.");
+            startPreview();
         } catch (IOException e) {
             Log.d(TAG, "Error setting camera preview: " + e.getMessage());
         }
     }
 
     public void surfaceDestroyed(SurfaceHolder holder) {
-        // empty. Take care of releasing the Camera preview in your activity.
+        // Take care of releasing the Camera preview in your activity, only the frames stop here.
+        mPreviewing = false;
+        if (mFrameProcessor != null) {
+            mFrameProcessor.stop();
+        }
+    }
+
+    /**
+     * The buffers of the frame consumer are sized from the preview parameters, so they are
+     * given to the camera right before the preview starts.
+     */
+    private void startPreview() {
+        if (mFrameProcessor != null) {
+            mFrameProcessor.start(mCamera);
+        }
+        mCamera.startPreview();
+        mPreviewing = true;
+        Log.d(TAG, "Camera preview started.");
     }
 
     public void surfaceChanged(SurfaceHolder holder, int format, int w, int h) {
@@ -126,6 +202,7 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         }
 
         // stop preview before making changes
+        mPreviewing = false;
         try {
             mCamera.stopPreview();
             Log.d(TAG, "Preview stopped.");
@@ -136,13 +213,56 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
 
         int orientation = calculatePreviewOrientation(mCameraInfo, mDisplayOrientation);
         mCamera.setDisplayOrientation(orientation);
+        applyPreviewSelection(w, h);
 
         try {
             mCamera.setPreviewDisplay(mHolder);
-            mCamera.startPreview();
-            Log.d(TAG, "Camera preview started.");
+            startPreview();
         } catch (Exception e) {
             Log.d(TAG, "Error starting camera preview: " + e.getMessage());
         }
     }
+
+    /**
+     * Set the preview size and frame rate for the surface, the preview must be stopped. The
+     * supported values are only read the first time a camera is shown in a surface of this size.
+     */
+    private void applyPreviewSelection(int width, int height) {
+        try {
+            Camera.Parameters parameters = mCamera.getParameters();
+            PreviewSelector.Selection selection = mSelector.get(mCameraId, PreviewSelector.CAMERA1_FPS_SCALE, width, height);
+            if (selection == null) {
+                selection = select(parameters, width, height);
+            }
+            parameters.setPreviewSize(selection.width, selection.height);
+            if (selection.hasFpsRange) {
+                parameters.setPreviewFpsRange(selection.minFps, selection.maxFps);
+            }
+            mCamera.setParameters(parameters);
+            Log.d(TAG, "Preview size " + selection.width + "x" + selection.height);
+        } catch (RuntimeException e) {
+            // keep the current parameters
+            Log.d(TAG, "Error setting preview size: " + e.getMessage());
+        }
+    }
+
+    private PreviewSelector.Selection select(Camera.Parameters parameters, int width, int height) {
+        List<Camera.Size> sizes = parameters.getSupportedPreviewSizes();
+        int[] widths = new int[sizes.size()];
+        int[] heights = new int[sizes.size()];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = sizes.get(i).width;
+            heights[i] = sizes.get(i).height;
+        }
+        List<int[]> ranges = parameters.getSupportedPreviewFpsRange();
+        int count = ranges != null ? ranges.size() : 0;
+        int[] mins = new int[count];
+        int[] maxs = new int[count];
+        for (int i = 0; i < count; i++) {
+            mins[i] = ranges.get(i)[Camera.Parameters.PREVIEW_FPS_MIN_INDEX];
+            maxs[i] = ranges.get(i)[Camera.Parameters.PREVIEW_FPS_MAX_INDEX];
+        }
+        return mSelector.select(mCameraId, PreviewSelector.CAMERA1_FPS_SCALE, width, height,
+                widths, heights, mins, maxs);
+    }
 }
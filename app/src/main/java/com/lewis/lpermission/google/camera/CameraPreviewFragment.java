@@ -16,10 +16,9 @@
 
 package com.lewis.lpermission.google.camera;
 
-import android.hardware.Camera;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -29,8 +28,9 @@ import android.widget.Toast;
 import com.lewis.lpermission.R;
 
 /**
- * Displays a {@link CameraPreview} of the first {@link Camera}.
- * An error message is displayed if the Camera is not available.
+ * Displays a preview of the first camera, through Camera2 when the device supports it.
+ * An error message is displayed if the Camera is not available. The camera is opened and released
+ * by a {@link CameraBackend}, off the main thread.
  * <p>
  * This Fragment is only used to illustrate that access to the Camera API has been granted (or
  * denied) as part of the runtime permissions model. It is not relevant for the use of the
@@ -41,79 +41,72 @@ import com.lewis.lpermission.R;
  */
 public class CameraPreviewFragment extends Fragment {
 
-    private static final String TAG = "CameraPreview";
-
     /**
      * Id of the camera to access. 0 is the first camera.
      */
     private static final int CAMERA_ID = 0;
 
-    private CameraPreview mPreview;
-    private Camera mCamera;
+    private CameraBackend mBackend;
+    private FrameLayout mRoot;
+    private View mPreview;
 
     public static CameraPreviewFragment newInstance() {
         return new CameraPreviewFragment();
     }
 
-    /**
-     * A safe way to get an instance of the Camera object.
-     */
-    public static Camera getCameraInstance(int cameraId) {
-        Camera c = null;
-        try {
-            c = Camera.open(cameraId); // attempt to get a Camera instance
-        } catch (Exception e) {
-            // Camera is not available (in use or does not exist)
-            Log.d(TAG, "Camera " + cameraId + " is not available: " + e.getMessage());
-        }
-        return c; // returns null if camera is unavailable
-    }
-
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
             Bundle savedInstanceState) {
+        // The camera is opened in the background, a progress bar is shown until it is ready.
+        mRoot = new FrameLayout(getActivity());
+        inflater.inflate(R.layout.fragment_camera, mRoot, true);
+        return mRoot;
+    }
 
-        // Open an instance of the first camera and retrieve its info.
-        mCamera = getCameraInstance(CAMERA_ID);
-        Camera.CameraInfo cameraInfo = null;
-
-        if (mCamera != null) {
-            // Get camera info only if the camera is available
-            cameraInfo = new Camera.CameraInfo();
-            Camera.getCameraInfo(CAMERA_ID, cameraInfo);
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (mRoot.findViewById(R.id.camera_preview) == null) {
+            // The camera was not available last time, try again.
+            mRoot.removeAllViews();
+            LayoutInflater.from(getActivity()).inflate(R.layout.fragment_camera, mRoot, true);
         }
-
-        if (mCamera == null || cameraInfo == null) {
-            // Camera is not available, display error message
-            Toast.makeText(getActivity(), "Camera is not available.", Toast.LENGTH_SHORT).show();
-            return inflater.inflate(R.layout.fragment_camera_unavailable, null);
+        mRoot.findViewById(R.id.camera_progress).setVisibility(View.VISIBLE);
+        if (mBackend == null) {
+            mBackend = CameraBackend.create(getActivity(), CAMERA_ID);
         }
+        mBackend.open(getActivity(), new CameraBackend.Callback() {
+            @Override
+            public void onOpened(@NonNull View preview) {
+                showPreview(preview);
+            }
+
+            @Override
+            public void onUnavailable() {
+                // Camera is not available, display error message
+                Toast.makeText(getActivity(), "Camera is not available.", Toast.LENGTH_SHORT).show();
+                mRoot.removeAllViews();
+                LayoutInflater.from(getActivity()).inflate(R.layout.fragment_camera_unavailable, mRoot, true);
+            }
+        });
+    }
 
-        View root = inflater.inflate(R.layout.fragment_camera, null);
-
-        // Get the rotation of the screen to adjust the preview image accordingly.
-        final int displayRotation = getActivity().getWindowManager().getDefaultDisplay()
-                .getRotation();
-
-        // Create the Preview view and set it as the content of this Activity.
-        mPreview = new CameraPreview(getActivity(), mCamera, cameraInfo, displayRotation);
-        FrameLayout preview = (FrameLayout) root.findViewById(R.id.camera_preview);
-        preview.addView(mPreview);
-
-        return root;
+    private void showPreview(View preview) {
+        // Set the Preview view as the content of this Activity.
+        mPreview = preview;
+        mRoot.findViewById(R.id.camera_progress).setVisibility(View.GONE);
+        FrameLayout container = (FrameLayout) mRoot.findViewById(R.id.camera_preview);
+        container.addView(mPreview);
     }
 
     @Override
     public void onPause() {
         super.onPause();
-        // Stop camera access
-        releaseCamera();
-    }
-
-    private void releaseCamera() {
-        if (mCamera != null) {
-            mCamera.release();        // release the camera for other applications
-            mCamera = null;
+        // Stop camera access, the preview no longer shows the camera once it is closed.
+        mBackend.close();
+        if (mPreview != null) {
+            ((ViewGroup) mRoot.findViewById(R.id.camera_preview)).removeView(mPreview);
+            mPreview = null;
         }
     }
 }
@@ -0,0 +1,150 @@
+package com.lewis.lpermission.google.camera;
+
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: opens and releases a {@link Camera} on its own thread, Camera.open can block for
+ * hundreds of milliseconds. The camera is handed to the main thread once it is open, and released
+ * on the thread that opened it
+ */
+
+public class CameraSession {
+
+    private static final String TAG = "CameraSession";
+
+    /**
+     * called on the main thread
+     */
+    public interface Callback {
+
+        void onOpened(@NonNull Camera camera, @NonNull Camera.CameraInfo cameraInfo);
+
+        /**
+         * the camera is in use or does not exist
+         */
+        void onUnavailable();
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private CameraThread mThread;
+
+    /**
+     * open a camera, the camera opened before is closed
+     *
+     * @param cameraId id of the camera, 0 is the first camera
+     * @param callback receives the camera, not called if the session is closed first
+     */
+    @MainThread
+    public void open(int cameraId, @NonNull Callback callback) {
+        close();
+        mThread = new CameraThread(cameraId, callback);
+        mThread.start();
+        new Handler(mThread.getLooper()).post(mThread.mOpen);
+    }
+
+    /**
+     * release the camera on its thread and stop the thread. The camera must not be used anymore
+     * once this is called
+     */
+    @MainThread
+    public void close() {
+        if (mThread == null) {
+            return;
+        }
+        final CameraThread thread = mThread;
+        mThread = null;
+        thread.mClosed = true;
+        new Handler(thread.getLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                thread.release();
+                thread.quit();
+            }
+        });
+    }
+
+    /**
+     * a safe way to get an instance of the Camera object, it blocks
+     *
+     * @return null if the camera is in use or does not exist
+     */
+    private static Camera getCameraInstance(int cameraId) {
+        Camera c = null;
+        try {
+            c = Camera.open(cameraId); // attempt to get a Camera instance
+        } catch (Exception e) {
+            // Camera is not available (in use or does not exist)
+            Log.d(TAG, "Camera " + cameraId + " is not available: " + e.getMessage());
+        }
+        return c; // returns null if camera is unavailable
+    }
+
+    /**
+     * the thread of one camera, it opens it once started
+     */
+    private final class CameraThread extends HandlerThread {
+
+        private final int mCameraId;
+        private final Callback mCallback;
+        /**
+         * only used on this thread
+         */
+        private Camera mCamera;
+        /**
+         * set on the main thread, the callback is not called once closed
+         */
+        private boolean mClosed;
+
+        private final Runnable mOpen = new Runnable() {
+            @Override
+            public void run() {
+                open();
+            }
+        };
+
+        CameraThread(int cameraId, Callback callback) {
+            super(TAG);
+            this.mCameraId = cameraId;
+            this.mCallback = callback;
+        }
+
+        private void open() {
+            final Camera camera = getCameraInstance(mCameraId);
+            final Camera.CameraInfo cameraInfo = new Camera.CameraInfo();
+            if (camera != null) {
+                Camera.getCameraInfo(mCameraId, cameraInfo);
+                mCamera = camera;
+            }
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mClosed) {
+                        // the release is already queued on the camera thread
+                        return;
+                    }
+                    if (camera != null) {
+                        mCallback.onOpened(camera, cameraInfo);
+                    } else {
+                        mCallback.onUnavailable();
+                    }
+                }
+            });
+        }
+
+        void release() {
+            if (mCamera != null) {
+                mCamera.release();        // release the camera for other applications
+                mCamera = null;
+                Log.d(TAG, "Camera released.");
+            }
+        }
+    }
+}
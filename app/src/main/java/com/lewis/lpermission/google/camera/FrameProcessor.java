@@ -0,0 +1,181 @@
+package com.lewis.lpermission.google.camera;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: hands preview frames to a {@link CameraPreview.FrameConsumer} on a worker thread.
+ * The camera fills a few preallocated buffers, each buffer goes back to the camera once its frame
+ * is released, so nothing is allocated per frame. A frame that arrives while the previous one still
+ * waits for the worker is dropped
+ */
+
+final class FrameProcessor implements Camera.PreviewCallback, Handler.Callback, PreviewFrame.Recycler {
+
+    private static final String TAG = "FrameProcessor";
+
+    /**
+     * one filled by the camera, one waiting for the worker and one with the consumer
+     */
+    private static final int BUFFER_COUNT = 3;
+    private static final int MSG_FRAME = 1;
+
+    private final CameraPreview.FrameConsumer mConsumer;
+    private final PreviewFrame[] mFrames = new PreviewFrame[BUFFER_COUNT];
+    private HandlerThread mThread;
+    private Handler mHandler;
+    /**
+     * the previewing camera, null when stopped
+     */
+    private Camera mCamera;
+    private int mWidth;
+    private int mHeight;
+    private int mFormat;
+    private int mLength;
+    /**
+     * a frame waits for the worker
+     */
+    private boolean mPending;
+
+    FrameProcessor(CameraPreview.FrameConsumer consumer) {
+        this(consumer, null);
+    }
+
+    /**
+     * @param handler handler of the worker, null to start a worker thread. Messages are handled
+     *                by {@link #handleMessage(Message)}
+     */
+    FrameProcessor(CameraPreview.FrameConsumer consumer, Handler handler) {
+        this.mConsumer = consumer;
+        this.mHandler = handler;
+    }
+
+    /**
+     * give the buffers to the camera, call it once the preview size is set. Buffers are only
+     * allocated again when the preview size or format changes
+     */
+    synchronized void start(Camera camera) {
+        Camera.Parameters parameters = camera.getParameters();
+        Camera.Size size = parameters.getPreviewSize();
+        mWidth = size.width;
+        mHeight = size.height;
+        mFormat = parameters.getPreviewFormat();
+        mLength = mWidth * mHeight * ImageFormat.getBitsPerPixel(mFormat) / 8;
+        if (mHandler == null) {
+            mThread = new HandlerThread(TAG);
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper(), this);
+        }
+        mCamera = camera;
+        // clears the buffers given before
+        camera.setPreviewCallbackWithBuffer(null);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            PreviewFrame frame = mFrames[i];
+            // frames still with the consumer are given back once released
+            if (frame == null || frame.mState == PreviewFrame.FREE || frame.mState == PreviewFrame.QUEUED) {
+                enqueue(i);
+            }
+        }
+        camera.setPreviewCallbackWithBuffer(this);
+    }
+
+    /**
+     * take the buffers back and stop the worker, frames with the consumer may still be released
+     */
+    synchronized void stop() {
+        if (mCamera != null) {
+            mCamera.setPreviewCallbackWithBuffer(null);
+            mCamera = null;
+        }
+        for (PreviewFrame frame : mFrames) {
+            if (frame != null && frame.mState != PreviewFrame.CONSUMED) {
+                frame.mState = PreviewFrame.FREE;
+            }
+        }
+        mPending = false;
+        if (mThread != null) {
+            mHandler.removeMessages(MSG_FRAME);
+            mThread.quit();
+            mThread = null;
+            mHandler = null;
+        }
+    }
+
+    /**
+     * called on the thread that opened the camera
+     */
+    @Override
+    public synchronized void onPreviewFrame(byte[] data, Camera camera) {
+        if (camera != mCamera) return;
+        int index = indexOf(data);
+        if (index < 0) return;
+        if (mPending) {
+            // the consumer is behind, drop the frame
+            enqueue(index);
+            return;
+        }
+        PreviewFrame frame = mFrames[index];
+        frame.mState = PreviewFrame.PENDING;
+        mPending = true;
+        mHandler.obtainMessage(MSG_FRAME, frame).sendToTarget();
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        PreviewFrame frame = (PreviewFrame) msg.obj;
+        synchronized (this) {
+            if (frame.mState != PreviewFrame.PENDING) {
+                // stopped meanwhile
+                return true;
+            }
+            frame.mState = PreviewFrame.CONSUMED;
+            mPending = false;
+        }
+        mConsumer.onFrame(frame);
+        return true;
+    }
+
+    @Override
+    public synchronized void release(PreviewFrame frame) {
+        if (frame.mState != PreviewFrame.CONSUMED) return;
+        frame.mState = PreviewFrame.FREE;
+        if (mCamera != null) {
+            for (int i = 0; i < BUFFER_COUNT; i++) {
+                if (mFrames[i] == frame) {
+                    enqueue(i);
+                    return;
+                }
+            }
+        }
+    }
+
+    private int indexOf(byte[] data) {
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            if (mFrames[i] != null && mFrames[i].mData == data) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * give a buffer to the camera, with a new one if the preview size changed
+     */
+    private void enqueue(int index) {
+        PreviewFrame frame = mFrames[index];
+        if (frame == null || frame.mData.length != mLength) {
+            frame = new PreviewFrame(this, new byte[mLength]);
+            mFrames[index] = frame;
+        }
+        frame.mWidth = mWidth;
+        frame.mHeight = mHeight;
+        frame.mFormat = mFormat;
+        frame.mState = PreviewFrame.QUEUED;
+        mCamera.addCallbackBuffer(frame.mData);
+    }
+}
@@ -0,0 +1,158 @@
+package com.lewis.lpermission.google.camera;
+
+import android.annotation.TargetApi;
+import android.graphics.ImageFormat;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.Surface;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: the Camera2 counterpart of {@link FrameProcessor}. An {@link ImageReader} receives
+ * the frames on a worker thread, the latest one is copied as NV21 into a pooled
+ * {@link PreviewFrame} and the image is closed right away. Frames are dropped while the consumer
+ * holds every pooled frame
+ */
+
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+final class ImageFrameReader implements ImageReader.OnImageAvailableListener, PreviewFrame.Recycler {
+
+    private static final String TAG = "ImageFrameReader";
+
+    /**
+     * one filled by the camera and one being copied
+     */
+    private static final int MAX_IMAGES = 2;
+    /**
+     * one with the consumer and one being filled
+     */
+    private static final int FRAME_COUNT = 2;
+
+    private final CameraPreview.FrameConsumer mConsumer;
+    private final PreviewFrame[] mFrames = new PreviewFrame[FRAME_COUNT];
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final ImageReader mReader;
+    /**
+     * only used on the reader thread
+     */
+    private boolean mClosed;
+
+    ImageFrameReader(CameraPreview.FrameConsumer consumer, int width, int height) {
+        this(consumer, width, height, null);
+    }
+
+    /**
+     * @param reader receives the frames and calls {@link #onImageAvailable(ImageReader)}, null to
+     *               create one on a worker thread
+     */
+    ImageFrameReader(CameraPreview.FrameConsumer consumer, int width, int height, ImageReader reader) {
+        this.mConsumer = consumer;
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            PreviewFrame frame = new PreviewFrame(this, new byte[width * height * 3 / 2]);
+            frame.mWidth = width;
+            frame.mHeight = height;
+            frame.mFormat = ImageFormat.NV21;
+            mFrames[i] = frame;
+        }
+        if (reader != null) {
+            mThread = null;
+            mHandler = null;
+            mReader = reader;
+            return;
+        }
+        mThread = new HandlerThread(TAG);
+        mThread.start();
+        mReader = ImageReader.newInstance(width, height, ImageFormat.YUV_420_888, MAX_IMAGES);
+        mHandler = new Handler(mThread.getLooper());
+        mReader.setOnImageAvailableListener(this, mHandler);
+    }
+
+    Surface getSurface() {
+        return mReader.getSurface();
+    }
+
+    /**
+     * call it once the capture session no longer uses the surface. The reader is closed on its
+     * thread, after the image being copied, since closing it frees the planes of its images
+     */
+    void close() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mClosed = true;
+                mReader.close();
+            }
+        });
+        mThread.quitSafely();
+    }
+
+    @Override
+    public void onImageAvailable(ImageReader reader) {
+        if (mClosed) return;
+        // older images are dropped
+        Image image = reader.acquireLatestImage();
+        if (image == null) return;
+        PreviewFrame frame = take();
+        try {
+            if (frame == null) {
+                // the consumer is behind
+                return;
+            }
+            copy(image, frame.mData);
+        } finally {
+            image.close();
+        }
+        mConsumer.onFrame(frame);
+    }
+
+    private synchronized PreviewFrame take() {
+        for (PreviewFrame frame : mFrames) {
+            if (frame.mState == PreviewFrame.FREE) {
+                frame.mState = PreviewFrame.CONSUMED;
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void release(PreviewFrame frame) {
+        if (frame.mState != PreviewFrame.CONSUMED) return;
+        frame.mState = PreviewFrame.FREE;
+    }
+
+    /**
+     * the Y plane followed by interleaved V and U, without row padding
+     */
+    private static void copy(Image image, byte[] data) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Image.Plane[] planes = image.getPlanes();
+        ByteBuffer y = planes[0].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        int offset = 0;
+        for (int row = 0; row < height; row++) {
+            y.position(row * yRowStride);
+            y.get(data, offset, width);
+            offset += width;
+        }
+        ByteBuffer u = planes[1].getBuffer();
+        ByteBuffer v = planes[2].getBuffer();
+        int rowStride = planes[1].getRowStride();
+        int pixelStride = planes[1].getPixelStride();
+        for (int row = 0; row < height / 2; row++) {
+            for (int col = 0; col < width / 2; col++) {
+                int index = row * rowStride + col * pixelStride;
+                data[offset++] = v.get(index);
+                data[offset++] = u.get(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.lewis.lpermission.google.camera;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: a preview frame handed to a {@link CameraPreview.FrameConsumer}. Frames and their
+ * buffers are pooled, the data is only valid until {@link #release()}
+ */
+
+public final class PreviewFrame {
+
+    /**
+     * owns a pool of frames
+     */
+    interface Recycler {
+
+        void release(PreviewFrame frame);
+    }
+
+    static final int FREE = 0;
+    /**
+     * given to the camera to be filled
+     */
+    static final int QUEUED = 1;
+    /**
+     * filled, waiting for the consumer thread
+     */
+    static final int PENDING = 2;
+    /**
+     * handed to the consumer
+     */
+    static final int CONSUMED = 3;
+
+    private final Recycler mRecycler;
+    final byte[] mData;
+    int mWidth;
+    int mHeight;
+    int mFormat;
+    /**
+     * guarded by the recycler
+     */
+    int mState;
+
+    PreviewFrame(Recycler recycler, byte[] data) {
+        this.mRecycler = recycler;
+        this.mData = data;
+    }
+
+    /**
+     * @return the pixels, in {@link #getFormat()}
+     */
+    @NonNull
+    public byte[] getData() {
+        return mData;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return an {@link android.graphics.ImageFormat}, NV21 by default, always NV21 with the
+     * Camera2 backend
+     */
+    public int getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * give the buffer back to the camera, the frame must not be used anymore. Can be called from
+     * any thread. Calling it again is ignored until the frame is handed out again, from then on it
+     * would release the frame of the next holder
+     */
+    public void release() {
+        mRecycler.release(this);
+    }
+}
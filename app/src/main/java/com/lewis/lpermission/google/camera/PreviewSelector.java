@@ -0,0 +1,209 @@
+package com.lewis.lpermission.google.camera;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: picks the preview size and frame rate of a camera. The size has the aspect ratio of
+ * the surface and is the smallest one that covers it, within a maximum resolution, the frame rate
+ * range is the lowest one that reaches the target. A selection is cached per camera and camera
+ * API, the APIs number cameras and frame rates differently, and only computed again when the
+ * surface size changes
+ */
+
+public final class PreviewSelector {
+
+    /**
+     * 1080p at 30 fps, the default of most cameras
+     */
+    public static final PreviewSelector DEFAULT = new PreviewSelector(1920, 1080, 30);
+
+    /**
+     * frame rate units of android.hardware.Camera, frames per 1000 seconds
+     */
+    static final int CAMERA1_FPS_SCALE = 1000;
+    /**
+     * frame rate units of Camera2, frames per second
+     */
+    static final int CAMERA2_FPS_SCALE = 1;
+
+    /**
+     * aspect ratios closer than this are the same
+     */
+    private static final float ASPECT_TOLERANCE = 0.05f;
+
+    private final int mMaxLong;
+    private final int mMaxShort;
+    private final int mTargetFps;
+    private final ConcurrentHashMap<String, Selection> mCache = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxWidth  largest preview width, in landscape
+     * @param maxHeight largest preview height, in landscape
+     * @param targetFps frame rate to reach, in frames per second
+     */
+    public PreviewSelector(int maxWidth, int maxHeight, int targetFps) {
+        if (maxWidth <= 0 || maxHeight <= 0 || targetFps <= 0) {
+            throw new IllegalArgumentException("Invalid preview limits " + maxWidth + "x" + maxHeight + "@" + targetFps);
+        }
+        this.mMaxLong = Math.max(maxWidth, maxHeight);
+        this.mMaxShort = Math.min(maxWidth, maxHeight);
+        this.mTargetFps = targetFps;
+    }
+
+    /**
+     * a preview size and frame rate range, in the units of the camera API
+     */
+    static final class Selection {
+        final int surfaceWidth;
+        final int surfaceHeight;
+        final int width;
+        final int height;
+        /**
+         * false if the camera lists no frame rate range
+         */
+        final boolean hasFpsRange;
+        final int minFps;
+        final int maxFps;
+
+        Selection(int surfaceWidth, int surfaceHeight, int width, int height,
+                  boolean hasFpsRange, int minFps, int maxFps) {
+            this.surfaceWidth = surfaceWidth;
+            this.surfaceHeight = surfaceHeight;
+            this.width = width;
+            this.height = height;
+            this.hasFpsRange = hasFpsRange;
+            this.minFps = minFps;
+            this.maxFps = maxFps;
+        }
+    }
+
+    /**
+     * @param fpsScale the camera API, see {@link #select}
+     * @return the selection made for the camera and this surface size, null if there is none yet
+     */
+    @Nullable
+    Selection get(@NonNull String cameraId, int fpsScale, int surfaceWidth, int surfaceHeight) {
+        Selection selection = mCache.get(keyOf(cameraId, fpsScale));
+        return selection != null && selection.surfaceWidth == surfaceWidth
+                && selection.surfaceHeight == surfaceHeight ? selection : null;
+    }
+
+    /**
+     * select and cache the preview of a camera
+     *
+     * @param widths   supported preview widths
+     * @param heights  supported preview heights, at the same index
+     * @param fpsMins  lower bounds of the supported frame rate ranges
+     * @param fpsMaxs  upper bounds of the supported frame rate ranges, at the same index
+     * @param fpsScale frame rates are in frames per second times this, {@link #CAMERA1_FPS_SCALE}
+     *                 or {@link #CAMERA2_FPS_SCALE}
+     * @return {@link Selection}
+     */
+    @NonNull
+    Selection select(@NonNull String cameraId, int fpsScale, int surfaceWidth, int surfaceHeight,
+                     @NonNull int[] widths, @NonNull int[] heights,
+                     @NonNull int[] fpsMins, @NonNull int[] fpsMaxs) {
+        if (widths.length == 0) {
+            throw new IllegalArgumentException("Camera " + cameraId + " has no preview size");
+        }
+        int size = selectSize(surfaceWidth, surfaceHeight, widths, heights);
+        int range = selectFpsRange(fpsMins, fpsMaxs, mTargetFps * fpsScale);
+        Selection selection = new Selection(surfaceWidth, surfaceHeight, widths[size], heights[size],
+                range >= 0, range >= 0 ? fpsMins[range] : 0, range >= 0 ? fpsMaxs[range] : 0);
+        mCache.put(keyOf(cameraId, fpsScale), selection);
+        return selection;
+    }
+
+    private static String keyOf(String cameraId, int fpsScale) {
+        return fpsScale + ":" + cameraId;
+    }
+
+    /**
+     * sizes are compared in landscape, the surface may be in portrait
+     */
+    private int selectSize(int surfaceWidth, int surfaceHeight, int[] widths, int[] heights) {
+        int surfaceLong = Math.max(surfaceWidth, surfaceHeight);
+        int surfaceShort = Math.min(surfaceWidth, surfaceHeight);
+        float aspect = surfaceShort > 0 ? (float) surfaceLong / surfaceShort : 0;
+        int best = -1;
+        int smallest = 0;
+        for (int i = 0; i < widths.length; i++) {
+            int sizeLong = Math.max(widths[i], heights[i]);
+            int sizeShort = Math.min(widths[i], heights[i]);
+            if (area(widths, heights, i) < area(widths, heights, smallest)) {
+                smallest = i;
+            }
+            if (sizeLong > mMaxLong || sizeShort > mMaxShort) {
+                continue;
+            }
+            if (best < 0 || isBetter(i, best, widths, heights, aspect, surfaceLong, surfaceShort)) {
+                best = i;
+            }
+        }
+        // every size is above the maximum, the smallest one is the closest
+        return best >= 0 ? best : smallest;
+    }
+
+    /**
+     * closer aspect ratio first, then the smallest size covering the surface, then the largest
+     */
+    private static boolean isBetter(int i, int best, int[] widths, int[] heights, float aspect,
+                                    int surfaceLong, int surfaceShort) {
+        float diff = Math.abs(aspectOf(widths[i], heights[i]) - aspect);
+        float bestDiff = Math.abs(aspectOf(widths[best], heights[best]) - aspect);
+        if (Math.abs(diff - bestDiff) > ASPECT_TOLERANCE) {
+            return diff < bestDiff;
+        }
+        boolean covers = covers(widths[i], heights[i], surfaceLong, surfaceShort);
+        boolean bestCovers = covers(widths[best], heights[best], surfaceLong, surfaceShort);
+        if (covers != bestCovers) {
+            return covers;
+        }
+        long area = area(widths, heights, i);
+        long bestArea = area(widths, heights, best);
+        return covers ? area < bestArea : area > bestArea;
+    }
+
+    private static boolean covers(int width, int height, int surfaceLong, int surfaceShort) {
+        return Math.max(width, height) >= surfaceLong && Math.min(width, height) >= surfaceShort;
+    }
+
+    private static float aspectOf(int width, int height) {
+        return (float) Math.max(width, height) / Math.min(width, height);
+    }
+
+    private static long area(int[] widths, int[] heights, int i) {
+        return (long) widths[i] * heights[i];
+    }
+
+    /**
+     * the range with the lowest upper bound reaching the target, the widest of those so auto
+     * exposure can slow down in the dark. The fastest range if none reaches the target
+     *
+     * @return index of the range, -1 if there is none
+     */
+    private static int selectFpsRange(int[] mins, int[] maxs, int target) {
+        int best = -1;
+        for (int i = 0; i < mins.length; i++) {
+            if (best < 0) {
+                best = i;
+                continue;
+            }
+            boolean reaches = maxs[i] >= target;
+            boolean bestReaches = maxs[best] >= target;
+            if (reaches != bestReaches) {
+                if (reaches) best = i;
+            } else if (!reaches) {
+                if (maxs[i] > maxs[best] || maxs[i] == maxs[best] && mins[i] < mins[best]) best = i;
+            } else if (maxs[i] < maxs[best] || maxs[i] == maxs[best] && mins[i] < mins[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
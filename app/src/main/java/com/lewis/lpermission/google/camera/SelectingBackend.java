@@ -0,0 +1,117 @@
+package com.lewis.lpermission.google.camera;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: chooses between Camera2 and android.hardware.Camera when the camera is first
+ * opened. The characteristics of the camera are read on a thread of its own, then everything is
+ * forwarded to the chosen backend
+ */
+
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+final class SelectingBackend extends CameraBackend {
+
+    private static final String TAG = "SelectingBackend";
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Context mContext;
+    private final int mCameraId;
+    private CameraBackend mBackend;
+    private CameraPreview.FrameConsumer mConsumer;
+    private PreviewSelector mSelector = PreviewSelector.DEFAULT;
+    private boolean mSelecting;
+    /**
+     * the open waiting for the selection, replaced by a later open and cleared by close
+     */
+    private Runnable mPendingOpen;
+
+    SelectingBackend(Context context, int cameraId) {
+        this.mContext = context.getApplicationContext();
+        this.mCameraId = cameraId;
+    }
+
+    @Override
+    public void open(@NonNull final Activity activity, @NonNull final Callback callback) {
+        if (mBackend != null) {
+            mBackend.open(activity, callback);
+            return;
+        }
+        mPendingOpen = new Runnable() {
+            @Override
+            public void run() {
+                mBackend.open(activity, callback);
+            }
+        };
+        if (mSelecting) {
+            return;
+        }
+        mSelecting = true;
+        final HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+        new Handler(thread.getLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                final String id = camera2Id(mContext, mCameraId);
+                thread.quit();
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onSelected(id);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * on the main thread, the camera is only opened if it was not closed meanwhile
+     *
+     * @param camera2Id the Camera2 id of the camera, null to use android.hardware.Camera
+     */
+    private void onSelected(@Nullable String camera2Id) {
+        mSelecting = false;
+        mBackend = camera2Id != null ? new Camera2Backend(mContext, camera2Id) : new Camera1Backend(mCameraId);
+        mBackend.setPreviewSelector(mSelector);
+        mBackend.setFrameConsumer(mConsumer);
+        Runnable open = mPendingOpen;
+        mPendingOpen = null;
+        if (open != null) {
+            open.run();
+        }
+    }
+
+    @Override
+    public void setFrameConsumer(@Nullable CameraPreview.FrameConsumer consumer) {
+        mConsumer = consumer;
+        if (mBackend != null) {
+            mBackend.setFrameConsumer(consumer);
+        }
+    }
+
+    @Override
+    public void setPreviewSelector(@NonNull PreviewSelector selector) {
+        mSelector = selector;
+        if (mBackend != null) {
+            mBackend.setPreviewSelector(selector);
+        }
+    }
+
+    @Override
+    public void close() {
+        // a selection in progress still completes, it is kept for the next open
+        mPendingOpen = null;
+        if (mBackend != null) {
+            mBackend.close();
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.lewis.lpermission.permission;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: callbacks of a class and its superclasses, resolved once and looked up by type and
+ * request code. The generated {@link PermissionDispatcher} of the nearest class that has one is
+ * used, the callbacks of the classes below it are found by reflection. When one of those overrides
+ * a callback of the dispatcher, the whole hierarchy is resolved by reflection, the dispatcher
+ * would call the override with the annotations of the overridden method
+ */
+
+final class CallbackIndex {
+
+    private static final int TYPE_COUNT = 5;
+
+    private static final Method[] EMPTY = new Method[0];
+    private static final MethodInvoker[] NO_INVOKERS = new MethodInvoker[0];
+
+    /**
+     * the key is weak so the class loader can still be unloaded, the value is soft because
+     * the resolved methods hold a strong reference back to the class
+     */
+    private static final Map<Class<?>, SoftReference<CallbackIndex>> sIndexes = new WeakHashMap<>();
+
+    private final Class<?> mSource;
+    /**
+     * generated dispatcher of the source or of a superclass, null if none was processed
+     */
+    private final PermissionDispatcher<Object> mDispatcher;
+    /**
+     * class of {@link #mDispatcher}, its callbacks and those of its superclasses are called by it
+     */
+    private final Class<?> mDispatcherClass;
+    /**
+     * sorted request codes, per type, null until resolved
+     */
+    private int[][] mRequestCodes;
+    /**
+     * methods matching {@link #mRequestCodes} at the same position, per type, of the whole hierarchy
+     */
+    private Method[][][] mMethods;
+    private boolean mAcceptsResult;
+    /**
+     * invokers of the methods not called by {@link #mDispatcher}, written last so a non null value
+     * publishes the others
+     */
+    private volatile MethodInvoker[][][] mInvokers;
+
+    private CallbackIndex(@NonNull Class<?> source) {
+        mSource = source;
+        PermissionDispatcher<Object> dispatcher = null;
+        Class<?> type = source;
+        for (; isApplicationClass(type); type = type.getSuperclass()) {
+            dispatcher = findDispatcher(type);
+            if (dispatcher != null) break;
+        }
+        if (dispatcher != null && type != source && overridesCallback(source, type)) {
+            dispatcher = null;
+        }
+        mDispatcher = dispatcher;
+        mDispatcherClass = dispatcher != null ? type : null;
+        if (mDispatcherClass != source) {
+            resolve();
+        }
+    }
+
+    /**
+     * @param source          the indexed class
+     * @param dispatcherClass a superclass of source with a generated dispatcher
+     * @return true if a class below dispatcherClass overrides a callback of it or of its superclasses
+     */
+    private static boolean overridesCallback(Class<?> source, Class<?> dispatcherClass) {
+        Set<String> overrides = new HashSet<>();
+        for (Class<?> type = source; type != dispatcherClass; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (isOverridable(method) && isCallback(method)) {
+                    overrides.add(signatureOf(method));
+                }
+            }
+        }
+        if (overrides.isEmpty()) return false;
+        for (Class<?> type = dispatcherClass; isApplicationClass(type); type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (isOverridable(method) && isCallback(method) && overrides.contains(signatureOf(method))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCallback(Method method) {
+        for (Annotation annotation : method.getDeclaredAnnotations()) {
+            if (typeOf(annotation.annotationType()) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * framework classes declare no callbacks, and scanning them would be expensive
+     */
+    private static boolean isApplicationClass(Class<?> type) {
+        if (type == null || type == Object.class) return false;
+        String name = type.getName();
+        return !name.startsWith("android.") && !name.startsWith("java.") && !name.startsWith("javax.")
+                && !name.startsWith("dalvik.");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PermissionDispatcher<Object> findDispatcher(Class<?> source) {
+        Class<?> dispatcher;
+        try {
+            dispatcher = Class.forName(source.getName() + PermissionDispatcher.SUFFIX, true, source.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        try {
+            return (PermissionDispatcher<Object>) dispatcher.newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Unable to create " + dispatcher.getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create " + dispatcher.getName(), e);
+        }
+    }
+
+    private synchronized void resolve() {
+        if (mInvokers != null) return;
+        Class<?> source = mSource;
+        int[][] requestCodes = new int[TYPE_COUNT][];
+        Method[][][] methods = new Method[TYPE_COUNT][][];
+        MethodInvoker[][][] invokers = new MethodInvoker[TYPE_COUNT][][];
+        List<TreeMap<Integer, List<Method>>> types = new ArrayList<>(TYPE_COUNT);
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            types.add(new TreeMap<Integer, List<Method>>());
+        }
+        // signatures of the annotated methods met so far, an overridden callback is called once,
+        // with the annotations of the override
+        Set<String> overridden = new HashSet<>();
+        for (Class<?> type = source; isApplicationClass(type); type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (!isCallback(method) || (isOverridable(method) && !overridden.add(signatureOf(method)))) continue;
+                Annotation[] annotations = method.getDeclaredAnnotations();
+                for (Annotation annotation : annotations) {
+                    int kind = typeOf(annotation.annotationType());
+                    if (kind < 0) continue;
+                    int requestCode = requestCodeOf(annotation);
+                    add(types.get(kind), requestCode, method);
+                    if (annotation instanceof PermissionGranted && ((PermissionGranted) annotation).partial()) {
+                        add(types.get(PermissionDispatcher.PARTIALLY_GRANTED), requestCode, method);
+                    }
+                }
+            }
+        }
+        boolean acceptsResult = false;
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            TreeMap<Integer, List<Method>> codes = types.get(type);
+            requestCodes[type] = new int[codes.size()];
+            methods[type] = new Method[codes.size()][];
+            invokers[type] = new MethodInvoker[codes.size()][];
+            int i = 0;
+            for (Map.Entry<Integer, List<Method>> entry : codes.entrySet()) {
+                List<Method> sameCode = entry.getValue();
+                requestCodes[type][i] = entry.getKey();
+                methods[type][i] = sameCode.toArray(new Method[sameCode.size()]);
+                List<MethodInvoker> own = new ArrayList<>(sameCode.size());
+                for (Method method : sameCode) {
+                    if (!isDispatched(method.getDeclaringClass())) {
+                        MethodInvoker invoker = new MethodInvoker(method);
+                        acceptsResult |= invoker.acceptsResult();
+                        own.add(invoker);
+                    }
+                }
+                invokers[type][i] = own.isEmpty() ? NO_INVOKERS : own.toArray(new MethodInvoker[own.size()]);
+                i++;
+            }
+        }
+        mRequestCodes = requestCodes;
+        mMethods = methods;
+        mAcceptsResult = acceptsResult;
+        mInvokers = invokers;
+    }
+
+    /**
+     * @return true if the generated dispatcher calls the callbacks declared by the class
+     */
+    private boolean isDispatched(Class<?> declaringClass) {
+        if (mDispatcherClass == null) return false;
+        return declaringClass.isAssignableFrom(mDispatcherClass);
+    }
+
+    /**
+     * private and static methods are never overridden
+     */
+    private static boolean isOverridable(Method method) {
+        return (method.getModifiers() & (Modifier.PRIVATE | Modifier.STATIC)) == 0;
+    }
+
+    private static String signatureOf(Method method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        for (Class<?> parameter : method.getParameterTypes()) {
+            signature.append(parameter.getName()).append(';');
+        }
+        return signature.toString();
+    }
+
+    private static void add(Map<Integer, List<Method>> codes, int requestCode, Method method) {
+        List<Method> sameCode = codes.get(requestCode);
+        if (sameCode == null) {
+            sameCode = new ArrayList<>(1);
+            codes.put(requestCode, sameCode);
+        }
+        sameCode.add(method);
+    }
+
+    /**
+     * get the index of a class, resolving it on first use
+     *
+     * @param source class that declares or inherits the callbacks
+     * @return {@link CallbackIndex}
+     */
+    static CallbackIndex of(@NonNull Class<?> source) {
+        synchronized (sIndexes) {
+            SoftReference<CallbackIndex> reference = sIndexes.get(source);
+            CallbackIndex index = reference != null ? reference.get() : null;
+            if (index == null) {
+                index = new CallbackIndex(source);
+                sIndexes.put(source, new SoftReference<>(index));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * get the methods annotated with the annotation and request code, the returned array is
+     * shared and must not be modified
+     *
+     * @param annotation  one of the permission annotations
+     * @param requestCode request code
+     * @return methods, empty if none
+     */
+    @NonNull
+    Method[] get(@NonNull Class<? extends Annotation> annotation, int requestCode) {
+        int type = typeOf(annotation);
+        if (type < 0) return EMPTY;
+        int position = find(type, requestCode);
+        return position >= 0 ? mMethods[type][position] : EMPTY;
+    }
+
+    /**
+     * position of the request code in the tables of the type, resolving them on first use
+     */
+    private int find(int type, int requestCode) {
+        if (mInvokers == null) {
+            resolve();
+        }
+        return Arrays.binarySearch(mRequestCodes[type], requestCode);
+    }
+
+    /**
+     * @return true if a callback of the class takes a {@link PermissionResult}
+     */
+    boolean acceptsResult() {
+        if (mDispatcher != null && mDispatcher.acceptsResult()) {
+            return true;
+        }
+        return mDispatcherClass != mSource && mAcceptsResult;
+    }
+
+    /**
+     * call the callbacks of target of the type and request code
+     *
+     * @param target      instance of the indexed class
+     * @param type        one of the {@link PermissionDispatcher} types
+     * @param requestCode request code
+     * @param result      passed to callbacks that take it
+     */
+    void dispatch(@NonNull Object target, int type, int requestCode, @Nullable PermissionResult result) {
+        if (mDispatcherClass != mSource) {
+            int position = find(type, requestCode);
+            MethodInvoker[] invokers = position >= 0 ? mInvokers[type][position] : NO_INVOKERS;
+            for (MethodInvoker invoker : invokers) {
+                invoker.invoke(target, result);
+            }
+        }
+        if (mDispatcher != null) {
+            mDispatcher.dispatch(target, type, requestCode, result);
+        }
+    }
+
+    private static int typeOf(Class<? extends Annotation> annotation) {
+        if (PermissionGranted.class.equals(annotation)) {
+            return PermissionDispatcher.GRANTED;
+        } else if (PermissionDenied.class.equals(annotation)) {
+            return PermissionDispatcher.DENIED;
+        } else if (PermissionRationale.class.equals(annotation)) {
+            return PermissionDispatcher.RATIONALE;
+        } else if (PermissionNeverAskAgain.class.equals(annotation)) {
+            return PermissionDispatcher.NEVER_ASK_AGAIN;
+        }
+        return -1;
+    }
+
+    private static int requestCodeOf(Annotation annotation) {
+        if (annotation instanceof PermissionGranted) {
+            return ((PermissionGranted) annotation).value();
+        } else if (annotation instanceof PermissionDenied) {
+            return ((PermissionDenied) annotation).value();
+        } else if (annotation instanceof PermissionRationale) {
+            return ((PermissionRationale) annotation).value();
+        }
+        return ((PermissionNeverAskAgain) annotation).value();
+    }
+}
@@ -0,0 +1,92 @@
+package com.lewis.lpermission.permission;
+
+import android.app.Application;
+import android.content.pm.ActivityInfo;
+import android.content.pm.PackageManager;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: resolves the {@link CallbackIndex} of host classes on a background thread, so the
+ * first dispatch on the main thread finds it cached
+ */
+
+final class CallbackPreloader {
+
+    private static final String TAG = "LPermission";
+
+    private static Executor sExecutor;
+
+    private CallbackPreloader() {
+    }
+
+    private static synchronized Executor executor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "LPermission-preload");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+
+    static void preload(@NonNull final Class<?>... classes) {
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                for (Class<?> type : classes) {
+                    preload(type);
+                }
+            }
+        });
+    }
+
+    /**
+     * preload every activity declared in the manifest of the application
+     */
+    static void preload(@NonNull final Application application) {
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                ActivityInfo[] activities;
+                try {
+                    activities = application.getPackageManager()
+                            .getPackageInfo(application.getPackageName(), PackageManager.GET_ACTIVITIES).activities;
+                } catch (PackageManager.NameNotFoundException e) {
+                    return;
+                }
+                if (activities == null) return;
+                for (ActivityInfo activity : activities) {
+                    try {
+                        // not initialized, static initializers still run on the main thread
+                        preload(Class.forName(activity.name, false, application.getClassLoader()));
+                    } catch (ClassNotFoundException e) {
+                        Log.w(TAG, "Unable to preload " + activity.name, e);
+                    }
+                }
+            }
+        });
+    }
+
+    private static void preload(Class<?> type) {
+        try {
+            CallbackIndex.of(type);
+        } catch (RuntimeException | LinkageError e) {
+            // the dispatch will fail the same way, on the thread that can report it
+            Log.w(TAG, "Unable to preload " + type.getName(), e);
+        }
+    }
+}
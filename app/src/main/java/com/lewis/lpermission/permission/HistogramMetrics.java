@@ -0,0 +1,149 @@
+package com.lewis.lpermission.permission;
+
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: {@link PermissionMetrics} kept in memory as histograms with power of two buckets,
+ * one per stage and one for the system calls of a request. Recording doesn't allocate
+ */
+
+public final class HistogramMetrics implements PermissionMetrics {
+
+    /**
+     * row of the system calls, after the stages
+     */
+    public static final int SYSTEM_CALLS = STAGE_COUNT;
+
+    private static final String[] NAMES = {
+            "check", "rationale", "request", "result", "callback", "system calls"
+    };
+
+    /**
+     * bucket i holds the values in [2^(i-1), 2^i), bucket 0 holds 0
+     */
+    private static final int BUCKET_COUNT = Long.SIZE + 1;
+    private static final int ROW_COUNT = STAGE_COUNT + 1;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(ROW_COUNT * BUCKET_COUNT);
+    private final AtomicLongArray mCounts = new AtomicLongArray(ROW_COUNT);
+    private final AtomicLongArray mSums = new AtomicLongArray(ROW_COUNT);
+    private final AtomicLongArray mMaxes = new AtomicLongArray(ROW_COUNT);
+
+    @Override
+    public void onStage(int stage, int requestCode, long nanos) {
+        record(stage, nanos);
+    }
+
+    @Override
+    public void onSystemCalls(int requestCode, int count) {
+        record(SYSTEM_CALLS, count);
+    }
+
+    private void record(int row, long value) {
+        if (value < 0) value = 0;
+        mBuckets.incrementAndGet(row * BUCKET_COUNT + Long.SIZE - Long.numberOfLeadingZeros(value));
+        mCounts.incrementAndGet(row);
+        mSums.addAndGet(row, value);
+        long max;
+        do {
+            max = mMaxes.get(row);
+        } while (value > max && !mMaxes.compareAndSet(row, max, value));
+    }
+
+    /**
+     * @param row a {@link PermissionMetrics} stage or {@link #SYSTEM_CALLS}
+     * @return number of recorded values
+     */
+    public long getCount(int row) {
+        return mCounts.get(row);
+    }
+
+    /**
+     * @param row a {@link PermissionMetrics} stage or {@link #SYSTEM_CALLS}
+     * @return mean of the recorded values, 0 if there is none
+     */
+    public long getMean(int row) {
+        long count = mCounts.get(row);
+        return count == 0 ? 0 : mSums.get(row) / count;
+    }
+
+    /**
+     * @param row a {@link PermissionMetrics} stage or {@link #SYSTEM_CALLS}
+     * @return largest recorded value
+     */
+    public long getMax(int row) {
+        return mMaxes.get(row);
+    }
+
+    /**
+     * @param row        a {@link PermissionMetrics} stage or {@link #SYSTEM_CALLS}
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile, at most {@link #getMax(int)}
+     */
+    public long getPercentile(int row, double percentile) {
+        long count = mCounts.get(row);
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(row * BUCKET_COUNT + i);
+            if (seen >= rank && seen > 0) {
+                long bound = i == 0 ? 0 : i == Long.SIZE ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(bound, getMax(row));
+            }
+        }
+        return getMax(row);
+    }
+
+    /**
+     * @param row a {@link PermissionMetrics} stage or {@link #SYSTEM_CALLS}
+     * @return copy of the buckets, bucket i counts the values in [2^(i-1), 2^i)
+     */
+    @NonNull
+    public long[] getBuckets(int row) {
+        long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(row * BUCKET_COUNT + i);
+        }
+        return buckets;
+    }
+
+    /**
+     * forget every recorded value
+     */
+    public void reset() {
+        for (int i = 0; i < mBuckets.length(); i++) {
+            mBuckets.set(i, 0);
+        }
+        for (int row = 0; row < ROW_COUNT; row++) {
+            mCounts.set(row, 0);
+            mSums.set(row, 0);
+            mMaxes.set(row, 0);
+        }
+    }
+
+    /**
+     * @return one line per row, durations in microseconds
+     */
+    @NonNull
+    public String export() {
+        StringBuilder builder = new StringBuilder();
+        for (int row = 0; row < ROW_COUNT; row++) {
+            double scale = row == SYSTEM_CALLS ? 1 : 1000;
+            builder.append(String.format(Locale.US, "%s: count=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                    NAMES[row], getCount(row), getMean(row) / scale, getPercentile(row, 50) / scale,
+                    getPercentile(row, 90) / scale, getPercentile(row, 99) / scale, getMax(row) / scale));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return export();
+    }
+}
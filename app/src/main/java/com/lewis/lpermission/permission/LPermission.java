@@ -2,15 +2,20 @@ package com.lewis.lpermission.permission;
 
 import android.annotation.TargetApi;
 import android.app.Activity;
+import android.app.Application;
 import android.content.Context;
+import android.content.pm.PackageManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
-import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Author: lewis
@@ -20,6 +25,17 @@ import java.lang.reflect.Method;
 
 public class LPermission {
 
+    /**
+     * flag of {@link #evaluate(Activity, int, String[], int[])}
+     */
+    private static final int SOME_GRANTED = 0x100;
+
+    /**
+     * permissions of the requests sent to the system without their granted permissions, by host
+     * and request code, until the host forwards the result. Only used on the main thread
+     */
+    private static final Map<Object, Map<Integer, String[]>> sDirectRequests = new WeakHashMap<>();
+
     /**
      * may be an Activity, a Fragment or a Context
      */
@@ -39,6 +55,11 @@ public class LPermission {
      */
     private boolean mIsCheck;
 
+    /**
+     * receives the result instead of the annotated methods, may be null
+     */
+    private PermissionCallback mCallback;
+
     /*********init***************/
     private LPermission(Object object) {
         this.mObject = object;
@@ -88,6 +109,36 @@ public class LPermission {
         return new LPermission(context);
     }
 
+    /**
+     * measure every request, see {@link HistogramMetrics} for an implementation. Nothing is
+     * measured by default
+     *
+     * @param metrics receives the timings, null to stop measuring
+     */
+    public static void setMetrics(@Nullable PermissionMetrics metrics) {
+        Metrics.set(metrics);
+    }
+
+    /**
+     * resolve the callbacks of host classes on a background thread, so the first request of a
+     * screen doesn't pay for it on the main thread
+     *
+     * @param classes Activities and Fragments that declare permission callbacks
+     */
+    public static void preload(@NonNull Class<?>... classes) {
+        CallbackPreloader.preload(classes);
+    }
+
+    /**
+     * {@link #preload(Class[])} every activity declared in the manifest, best called from
+     * {@link Application#onCreate()}
+     *
+     * @param application the application
+     */
+    public static void preload(@NonNull Application application) {
+        CallbackPreloader.preload(application);
+    }
+
     /**
      * permission request code
      *
@@ -112,6 +163,18 @@ public class LPermission {
         return this;
     }
 
+    /**
+     * permissions you want to apply
+     *
+     * @param permissions permissions
+     * @return {@link LPermission}
+     */
+    public @NonNull
+    LPermission permission(@NonNull PermissionSet permissions) {
+        this.mPermissions = permissions.toArray();
+        return this;
+    }
+
     /**
      * true if you want to show rationale, otherwise false
      *
@@ -124,168 +187,414 @@ public class LPermission {
         return this;
     }
 
+    /**
+     * deliver the result to a callback instead of the annotated methods of the host. With a
+     * {@link Context} the permissions are only checked, since no dialog can be shown
+     *
+     * @param callback receives the result on the main thread
+     * @return {@link LPermission}
+     */
+    public @NonNull
+    LPermission callback(@NonNull PermissionCallback callback) {
+        this.mCallback = callback;
+        return this;
+    }
+
+    /**
+     * freeze the host, request code, permissions, rationale mode and callback into a request that
+     * can be executed many times
+     *
+     * @return {@link PermissionRequest}
+     */
+    public @NonNull
+    PermissionRequest build() {
+        if (mPermissions == null) {
+            throw new IllegalArgumentException("No permission to request");
+        }
+        return new PermissionRequest(mObject, mRequestCode, mPermissions, mIsCheck, mCallback);
+    }
+
+    /**
+     * the request as a cold stream, each subscription requests the permissions. The callback set
+     * with {@link #callback(PermissionCallback)} is not used
+     *
+     * @return {@link PermissionObservable}
+     */
+    public @NonNull
+    PermissionObservable observe() {
+        if (mPermissions == null) {
+            throw new IllegalArgumentException("No permission to request");
+        }
+        return new PermissionObservable(mObject, mRequestCode, mPermissions, mIsCheck);
+    }
+
     /**
      * request for permission
      */
-    @TargetApi(value = Build.VERSION_CODES.M)
     public void request() {
-        if (mIsCheck) {
-            applyPermissions(mObject, mRequestCode, mPermissions);
+        build().execute();
+    }
+
+    /**
+     * request permissions that are not all granted, nothing happens once the host is gone
+     *
+     * @param start time of the request, for the {@link PermissionMetrics}
+     */
+    @TargetApi(value = Build.VERSION_CODES.M)
+    static void request(PermissionHost host, int requestCode, String[] permissions, boolean isCheck,
+                        PermissionCallback callback, long start) {
+        if (host.getTarget() == null) {
+            return;
+        }
+        if (callback != null) {
+            requestForResult(host, requestCode, permissions, isCheck, callback, start);
+        } else if (isCheck) {
+            applyPermissions(host, requestCode, permissions, start);
         } else {
-            requestPermissions(mObject, mRequestCode, mPermissions);
+            requestPermissions(host, requestCode, permissions, start);
         }
     }
 
     /**
      * get permissions that you will request, don't check if the permission has been rejected
      *
-     * @param object      object who request permissions
+     * @param host        host who request permissions
      * @param requestCode request code
      * @param permissions request permissions
+     * @param start       time of the request, for the {@link PermissionMetrics}
      */
     @TargetApi(value = Build.VERSION_CODES.M)
-    private void requestPermissions(Object object, int requestCode, String[] permissions) {
+    private static void requestPermissions(PermissionHost host, int requestCode, String[] permissions, long start) {
         if (PermissionUtil.isLowerMarshmallow()) {
-            doExecuteSuccess(object, requestCode);
+            doExecuteSuccess(host, requestCode, permissions);
             return;
         }
-        String[] denyPermissions = PermissionUtil.getDeniedPermissions(PermissionUtil.getActivity(object), permissions);
-        if (denyPermissions.length > 0) {
-            if (object instanceof Activity) {
-                ((Activity) object).requestPermissions(permissions, requestCode);
-            } else if (object instanceof Fragment) {
-                ((Fragment) object).requestPermissions(permissions, requestCode);
-            } else {
-                throw new IllegalArgumentException(object.getClass().getName() + " is not supported!");
-            }
+        PermissionSnapshot snapshot = check(host.getContext(), requestCode, permissions);
+        Metrics.systemCalls(requestCode, snapshot.getSystemCalls());
+        if (!snapshot.isAllGranted()) {
+            doRequest(host, requestCode, permissions, start);
         } else {
-            doExecuteSuccess(object, requestCode);
+            doExecuteSuccess(host, requestCode, permissions);
         }
     }
 
     /**
      * get permissions that you will request, check if the permission has been rejected
      *
-     * @param object      object who request permissions
+     * @param host        host who request permissions
      * @param requestCode request code
      * @param permissions request permissions
+     * @param start       time of the request, for the {@link PermissionMetrics}
      */
     @TargetApi(value = Build.VERSION_CODES.M)
-    private static void applyPermissions(Object object, int requestCode, String... permissions) {
+    private static void applyPermissions(PermissionHost host, int requestCode, String[] permissions, long start) {
         if (PermissionUtil.isLowerMarshmallow()) {
-            doExecuteSuccess(object, requestCode);
+            doExecuteSuccess(host, requestCode, permissions);
             return;
         }
-        String[] denyPermissions = PermissionUtil.getDeniedPermissions(PermissionUtil.getActivity(object), permissions);
-        if (denyPermissions.length > 0) {
-            if (object instanceof Activity) {
-                if (!shouldShowRationale((Activity) object, requestCode, permissions)) {
-                    ((Activity) object).requestPermissions(permissions, requestCode);
-                }
-            } else if (object instanceof Fragment) {
-                if (!shouldShowRationale((Fragment) object, requestCode, permissions)) {
-                    ((Fragment) object).requestPermissions(permissions, requestCode);
-                }
-            } else {
-                throw new IllegalArgumentException(object.getClass().getName() + " is not supported!");
+        Activity activity = host.getActivity();
+        PermissionSnapshot snapshot = check(host.getContext(), requestCode, permissions);
+        if (!snapshot.isAllGranted() && activity != null) {
+            snapshot = checkRationale(activity, requestCode, snapshot);
+        }
+        Metrics.systemCalls(requestCode, snapshot.getSystemCalls());
+        if (!snapshot.isAllGranted()) {
+            if (!shouldShowRationale(host, requestCode, snapshot)) {
+                doRequest(host, requestCode, permissions, start);
             }
         } else {
-            doExecuteSuccess(object, requestCode);
+            doExecuteSuccess(host, requestCode, permissions);
         }
     }
 
     /**
-     * request success
+     * get permissions that you will request, the result is delivered to the callback
      *
-     * @param object      object request permission
-     * @param requestCode permission request code
+     * @param host           host who request permissions
+     * @param requestCode    request code
+     * @param permissions    request permissions
+     * @param checkRationale true to stop and report {@link PermissionResult#RATIONALE} if needed
+     * @param callback       receives the result
+     * @param start          time of the request, for the {@link PermissionMetrics}
      */
-    private static void doExecuteSuccess(Object object, int requestCode) {
-        callAnnotation(object, requestCode, PermissionGranted.class);
+    @TargetApi(value = Build.VERSION_CODES.M)
+    private static void requestForResult(final PermissionHost host, final int requestCode, final String[] permissions,
+                                         final boolean checkRationale, final PermissionCallback callback,
+                                         final long start) {
+        if (PermissionUtil.isLowerMarshmallow()) {
+            deliver(callback, PermissionResult.granted(requestCode, permissions));
+            return;
+        }
+        Object target = host.getTarget();
+        if (target == null) {
+            // collected while waiting for the fragment manager
+            return;
+        }
+        Activity activity = host.getActivity();
+        PermissionSnapshot snapshot = check(host.getContext(), requestCode, permissions);
+        if (checkRationale && activity != null && !snapshot.isAllGranted()) {
+            snapshot = checkRationale(activity, requestCode, snapshot);
+        }
+        Metrics.systemCalls(requestCode, snapshot.getSystemCalls());
+        if (snapshot.isAllGranted() || activity == null || snapshot.shouldShowRationale()) {
+            deliver(callback, PermissionResult.of(requestCode, snapshot));
+            return;
+        }
+        if (!(activity instanceof FragmentActivity)) {
+            throw new IllegalArgumentException(activity.getClass().getName() + " must be a FragmentActivity to request with a callback");
+        }
+        PermissionFragment fragment = PermissionFragment.attach((FragmentActivity) activity);
+        if (fragment == null) {
+            // the fragment manager is busy, try again once it is done
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    requestForResult(host, requestCode, permissions, checkRationale, callback, start);
+                }
+            });
+            return;
+        }
+        fragment.request(target, requestCode, permissions, callback, start);
+    }
+
+    private static PermissionSnapshot check(Context context, int requestCode, String[] permissions) {
+        long start = Metrics.start();
+        PermissionSnapshot snapshot = PermissionSnapshot.take(context, null, permissions);
+        Metrics.end(PermissionMetrics.CHECK, requestCode, start);
+        return snapshot;
+    }
+
+    private static PermissionSnapshot checkRationale(Activity activity, int requestCode, PermissionSnapshot snapshot) {
+        long start = Metrics.start();
+        snapshot = snapshot.withRationale(activity);
+        Metrics.end(PermissionMetrics.RATIONALE, requestCode, start);
+        return snapshot;
     }
 
     /**
-     * request failure
+     * ask the system for permissions, through the {@link PermissionFragment} of the activity when
+     * it is a {@link FragmentActivity}, otherwise the host must forward the result to
+     * {@link #onPermissionResult(Object, int, String[], int[])}. Only the permissions that were
+     * not granted yet are sent, the others are added back to the result
      *
-     * @param object      permission request object
-     * @param requestCode permission request code
+     * @param host        an Activity or a Fragment
+     * @param requestCode request code
+     * @param permissions request permissions
+     * @param start       time of the request, for the {@link PermissionMetrics}
      */
-    private static void doExecuteFail(Object object, int requestCode) {
-        callAnnotation(object, requestCode, PermissionDenied.class);
+    @TargetApi(value = Build.VERSION_CODES.M)
+    private static void doRequest(final PermissionHost host, final int requestCode, final String[] permissions,
+                                  final long start) {
+        if (!host.canRequest()) {
+            throw new IllegalArgumentException(host.getName() + " is not supported!");
+        }
+        Object target = host.getTarget();
+        Activity activity = host.getActivity();
+        if (target == null || activity == null) {
+            return;
+        }
+        if (activity instanceof FragmentActivity) {
+            PermissionFragment fragment = PermissionFragment.attach((FragmentActivity) activity);
+            if (fragment == null) {
+                // the fragment manager is busy, the host doesn't forward results, try again once it is done
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        doRequest(host, requestCode, permissions, start);
+                    }
+                });
+                return;
+            }
+            fragment.request(target, requestCode, permissions, null, start);
+            return;
+        }
+        Metrics.end(PermissionMetrics.REQUEST, requestCode, start);
+        String[] planned = PermissionPlanner.plan(host.getContext(), permissions);
+        if (planned.length == 0) {
+            planned = permissions;
+        } else if (planned.length < permissions.length) {
+            Map<Integer, String[]> requests = sDirectRequests.get(target);
+            if (requests == null) {
+                requests = new HashMap<>();
+                sDirectRequests.put(target, requests);
+            }
+            requests.put(requestCode, permissions);
+        }
+        host.requestPermissions(planned, requestCode);
     }
 
-    private static void doExecuteRationale(Object object, int requestCode) {
-        callAnnotation(object, requestCode, PermissionRationale.class);
+    /**
+     * @return the permissions of a request sent without its granted permissions, null if it was
+     * sent as requested
+     */
+    private static String[] takeDirectRequest(Object host, int requestCode) {
+        Map<Integer, String[]> requests = sDirectRequests.get(host);
+        if (requests == null) return null;
+        String[] requested = requests.remove(requestCode);
+        if (requests.isEmpty()) {
+            sDirectRequests.remove(host);
+        }
+        return requested;
     }
 
-    private static void callAnnotation(Object object, int requestCode, @NonNull Class<? extends Annotation> annotation, Object... args) {
-        Method[] executeMethod = PermissionUtil.getMethodByRequestCode(object.getClass(), annotation, requestCode);
-        if (executeMethod.length > 0) {
-            try {
-                for (Method method : executeMethod) {
-                    if (!method.isAccessible()) method.setAccessible(true);
-                    method.invoke(object, args);
+    /**
+     * the results of the requested permissions, those that were not sent are granted
+     */
+    private static int[] merge(String[] requested, String[] permissions, int[] grantResult) {
+        int[] results = new int[requested.length];
+        for (int i = 0; i < requested.length; i++) {
+            results[i] = PackageManager.PERMISSION_GRANTED;
+            for (int j = 0; j < permissions.length && j < grantResult.length; j++) {
+                if (requested[i].equals(permissions[j])) {
+                    results[i] = grantResult[j];
+                    break;
                 }
-            } catch (IllegalAccessException e) {
-                e.printStackTrace();
-            } catch (InvocationTargetException e) {
-                e.printStackTrace();
             }
         }
+        return results;
     }
 
-    public static void onPermissionResult(Object object, int requestCode, @NonNull String[] permissions, @NonNull int[] grantResult) {
-        boolean allGranted = PermissionUtil.verifyPermission(grantResult);
-        if (allGranted) {
-            doExecuteSuccess(object, requestCode);
-        } else {
-            if (object instanceof Activity) {
-                if (checkNeverAskAgain((Activity) object, requestCode, permissions)) {
-                    doExecuteFail(object, requestCode);
-                }
-            } else if (object instanceof Fragment) {
-                if (checkNeverAskAgain((Fragment) object, requestCode, permissions)) {
-                    doExecuteFail(object, requestCode);
-                }
-            } else {
-                throw new IllegalArgumentException(object.getClass().getName() + " is not supported!");
-            }
-        }
+    /**
+     * request success
+     *
+     * @param host        host request permission
+     * @param requestCode permission request code
+     * @param permissions request permissions, all granted
+     */
+    private static void doExecuteSuccess(PermissionHost host, int requestCode, String[] permissions) {
+        doExecuteSuccess(host, requestCode, host.acceptsResult() ? PermissionResult.granted(requestCode, permissions) : null);
     }
 
-    private static boolean shouldShowRationale(Activity activity, int requestCode, String... perms) {
-        return shouldShowRequestPermissionRationale(activity, requestCode, perms);
+    static void doExecuteSuccess(PermissionHost host, int requestCode, PermissionResult result) {
+        long start = Metrics.start();
+        host.dispatch(PermissionDispatcher.GRANTED, requestCode, result);
+        Metrics.end(PermissionMetrics.CALLBACK, requestCode, start);
     }
 
-    private static boolean shouldShowRationale(Fragment fragment, int requestCode, String... perms) {
-        return shouldShowRequestPermissionRationale(fragment.getActivity(), requestCode, perms);
+    private static void doExecuteRationale(PermissionHost host, int requestCode, PermissionSnapshot snapshot) {
+        long start = Metrics.start();
+        PermissionResult result = host.acceptsResult() ? PermissionResult.of(requestCode, snapshot) : null;
+        host.dispatch(PermissionDispatcher.RATIONALE, requestCode, result);
+        Metrics.end(PermissionMetrics.CALLBACK, requestCode, start);
     }
 
-    private static boolean shouldShowRequestPermissionRationale(Activity activity, int requestCode, String... perms) {
-        for (String permission : perms) {
-            if (ActivityCompat.shouldShowRequestPermissionRationale(activity, permission)) {
-                callAnnotation(activity, requestCode, PermissionRationale.class);
-                return true;
+    /**
+     * deliver the result of a request made by a {@link PermissionFragment}
+     *
+     * @param activity activity of the fragment, null if it is detached
+     * @param object   the host, null if it is gone
+     * @param callback callback of the request, null for the annotated methods of the host
+     */
+    static void onPermissionResult(Activity activity, Object object, int requestCode, @NonNull String[] permissions,
+                                   @NonNull int[] grantResult, PermissionCallback callback) {
+        if (callback == null) {
+            if (object != null) {
+                onPermissionResult(object, requestCode, permissions, grantResult);
             }
+            return;
         }
-        return false;
+        long start = Metrics.start();
+        for (int i = 0; i < permissions.length && i < grantResult.length; i++) {
+            PermissionCache.put(permissions[i], grantResult[i]);
+        }
+        PermissionResult result = PermissionResult.of(activity, requestCode, permissions, grantResult);
+        Metrics.end(PermissionMetrics.RESULT, requestCode, start);
+        deliver(callback, result);
     }
 
-    private static boolean checkNeverAskAgain(Activity activity, int requestCode, String[] perms) {
-        return shouldShowNeverAskAgainTip(activity, requestCode, perms);
+    static void deliver(PermissionCallback callback, PermissionResult result) {
+        long start = Metrics.start();
+        callback.onResult(result);
+        Metrics.end(PermissionMetrics.CALLBACK, result.getRequestCode(), start);
     }
 
-    private static boolean checkNeverAskAgain(Fragment fragment, int requestCode, String[] perms) {
-        return shouldShowNeverAskAgainTip(fragment.getActivity(), requestCode, perms);
+    /**
+     * deliver a result to the callbacks of the host that requested it
+     *
+     * @param object      the Activity or Fragment that requested the permissions
+     * @param requestCode request code
+     * @param permissions requested permissions
+     * @param grantResult results reported by the system
+     */
+    public static void onPermissionResult(Object object, int requestCode, @NonNull String[] permissions, @NonNull int[] grantResult) {
+        PermissionHost host = PermissionHost.of(object);
+        if (!host.canRequest()) {
+            throw new IllegalArgumentException(object.getClass().getName() + " is not supported!");
+        }
+        String[] requested = takeDirectRequest(object, requestCode);
+        if (requested != null && grantResult.length > 0) {
+            // the granted permissions were not sent, report them as the host requested them
+            grantResult = merge(requested, permissions, grantResult);
+            permissions = requested;
+        }
+        Activity activity = host.getActivity();
+        long start = Metrics.start();
+        int evaluation = evaluate(activity, requestCode, permissions, grantResult);
+        PermissionResult result = host.acceptsResult()
+                ? PermissionResult.of(activity, requestCode, permissions, grantResult) : null;
+        Metrics.end(PermissionMetrics.RESULT, requestCode, start);
+        start = Metrics.start();
+        if ((evaluation & SOME_GRANTED) != 0) {
+            host.dispatch(PermissionDispatcher.PARTIALLY_GRANTED, requestCode, result);
+        }
+        switch (evaluation & ~SOME_GRANTED) {
+            case PermissionResult.GRANTED:
+                host.dispatch(PermissionDispatcher.GRANTED, requestCode, result);
+                break;
+            case PermissionResult.DENIED:
+                host.dispatch(PermissionDispatcher.DENIED, requestCode, result);
+                break;
+            default:
+                host.dispatch(PermissionDispatcher.NEVER_ASK_AGAIN, requestCode, result);
+                break;
+        }
+        Metrics.end(PermissionMetrics.CALLBACK, requestCode, start);
     }
 
-    private static boolean shouldShowNeverAskAgainTip(Activity activity, int requestCode, String[] perms) {
-        for (String permission : perms) {
-            if (ActivityCompat.shouldShowRequestPermissionRationale(activity, permission)) {
-                return true;
+    /**
+     * classify a result in one pass over the permissions, and remember the reported states.
+     * Rationale is only checked for denied permissions, until one needs it
+     *
+     * @return {@link PermissionResult#GRANTED} if every permission is granted,
+     * {@link PermissionResult#DENIED} if a denied permission can be asked again,
+     * otherwise {@link PermissionResult#NEVER_ASK_AGAIN}, with {@link #SOME_GRANTED} set if
+     * some but not all permissions are granted
+     */
+    private static int evaluate(Activity activity, int requestCode, String[] permissions, int[] grantResult) {
+        // at least one result must be checked, an empty result means the request was cancelled
+        boolean allGranted = grantResult.length > 0;
+        boolean someGranted = false;
+        boolean rationale = false;
+        int systemCalls = 0;
+        for (int i = 0; i < permissions.length; i++) {
+            boolean granted = false;
+            if (i < grantResult.length) {
+                PermissionCache.put(permissions[i], grantResult[i]);
+                granted = grantResult[i] == PackageManager.PERMISSION_GRANTED;
             }
+            if (granted) {
+                someGranted = true;
+            } else {
+                allGranted = false;
+                if (!rationale) {
+                    systemCalls++;
+                    rationale = ActivityCompat.shouldShowRequestPermissionRationale(activity, permissions[i]);
+                }
+            }
+        }
+        Metrics.systemCalls(requestCode, systemCalls);
+        if (allGranted) {
+            return PermissionResult.GRANTED;
+        }
+        return (rationale ? PermissionResult.DENIED : PermissionResult.NEVER_ASK_AGAIN)
+                | (someGranted ? SOME_GRANTED : 0);
+    }
+
+    private static boolean shouldShowRationale(PermissionHost host, int requestCode, PermissionSnapshot snapshot) {
+        if (snapshot.shouldShowRationale()) {
+            doExecuteRationale(host, requestCode, snapshot);
+            return true;
         }
-        callAnnotation(activity, requestCode, PermissionNeverAskAgain.class);
         return false;
     }
 }
@@ -0,0 +1,65 @@
+package com.lewis.lpermission.permission;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: calls a callback method by reflection, the method is made accessible once when the
+ * invoker is created instead of on every call
+ */
+
+final class MethodInvoker {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final Method mMethod;
+    private final boolean mAcceptsResult;
+
+    MethodInvoker(@NonNull Method method) {
+        Class<?>[] parameters = method.getParameterTypes();
+        if (parameters.length > 1 || (parameters.length == 1 && parameters[0] != PermissionResult.class)) {
+            throw new IllegalArgumentException(method + " must take no parameter or a PermissionResult");
+        }
+        if (!method.isAccessible()) method.setAccessible(true);
+        this.mMethod = method;
+        this.mAcceptsResult = parameters.length == 1;
+    }
+
+    @NonNull
+    Method getMethod() {
+        return mMethod;
+    }
+
+    boolean acceptsResult() {
+        return mAcceptsResult;
+    }
+
+    /**
+     * call the method, exceptions thrown by the callback are rethrown as they would be by a
+     * generated {@link PermissionDispatcher}
+     *
+     * @param target object that declares the method
+     * @param result passed if the method takes it
+     */
+    void invoke(@NonNull Object target, @Nullable PermissionResult result) {
+        try {
+            mMethod.invoke(target, mAcceptsResult ? new Object[]{result} : NO_ARGS);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to call " + mMethod, e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.lewis.lpermission.permission;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: timing hooks of the request stages, a single volatile read when no
+ * {@link PermissionMetrics} are set
+ */
+
+final class Metrics {
+
+    private static volatile PermissionMetrics sMetrics;
+
+    private Metrics() {
+    }
+
+    static void set(PermissionMetrics metrics) {
+        sMetrics = metrics;
+    }
+
+    static boolean isEnabled() {
+        return sMetrics != null;
+    }
+
+    /**
+     * @return start time of a stage, 0 if nothing is measured
+     */
+    static long start() {
+        return sMetrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * report a stage started with {@link #start()}
+     */
+    static void end(int stage, int requestCode, long start) {
+        PermissionMetrics metrics = sMetrics;
+        if (metrics != null && start != 0) {
+            metrics.onStage(stage, requestCode, System.nanoTime() - start);
+        }
+    }
+
+    static void systemCalls(int requestCode, int count) {
+        PermissionMetrics metrics = sMetrics;
+        if (metrics != null && count > 0) {
+            metrics.onSystemCalls(requestCode, count);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.lewis.lpermission.permission;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.content.ContextCompat;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: process wide cache of permission states, filled by checks and request results.
+ * It is cleared whenever the app comes back to the foreground, since the user may have changed
+ * the permissions in the settings meanwhile. Switching between activities of the app or showing
+ * the permission dialog keeps it
+ */
+
+public final class PermissionCache {
+
+    private static final ConcurrentHashMap<String, Boolean> sStates = new ConcurrentHashMap<>();
+    private static final AtomicBoolean sRegistered = new AtomicBoolean();
+    private static volatile boolean sStrict;
+
+    private PermissionCache() {
+    }
+
+    /**
+     * true to always ask the system, the cache is neither read nor written
+     *
+     * @param strict strict mode
+     */
+    public static void setStrictMode(boolean strict) {
+        sStrict = strict;
+        if (strict) {
+            sStates.clear();
+        }
+    }
+
+    public static boolean isStrictMode() {
+        return sStrict;
+    }
+
+    /**
+     * forget every cached state
+     */
+    public static void invalidate() {
+        sStates.clear();
+    }
+
+    /**
+     * check a permission, from the cache if it is known
+     *
+     * @param context    calling context
+     * @param permission permission
+     * @return {@link PackageManager#PERMISSION_GRANTED} or {@link PackageManager#PERMISSION_DENIED}
+     */
+    static int checkSelfPermission(@NonNull Context context, @NonNull String permission) {
+        if (sStrict) {
+            return ContextCompat.checkSelfPermission(context, permission);
+        }
+        Boolean granted = sStates.get(permission);
+        if (granted == null) {
+            register(context);
+            int result = ContextCompat.checkSelfPermission(context, permission);
+            put(permission, result);
+            return result;
+        }
+        return granted ? PackageManager.PERMISSION_GRANTED : PackageManager.PERMISSION_DENIED;
+    }
+
+    /**
+     * @param permission permission
+     * @return true if checking the permission won't ask the system
+     */
+    static boolean isCached(@NonNull String permission) {
+        return !sStrict && sStates.containsKey(permission);
+    }
+
+    /**
+     * remember a state reported by the system
+     *
+     * @param permission  permission
+     * @param grantResult {@link PackageManager#PERMISSION_GRANTED} or {@link PackageManager#PERMISSION_DENIED}
+     */
+    static void put(@NonNull String permission, int grantResult) {
+        if (sStrict) return;
+        sStates.put(permission, grantResult == PackageManager.PERMISSION_GRANTED ? Boolean.TRUE : Boolean.FALSE);
+    }
+
+    private static void register(Context context) {
+        if (sRegistered.get()) return;
+        Context application = context.getApplicationContext();
+        if (application instanceof Application && sRegistered.compareAndSet(false, true)) {
+            ((Application) application).registerActivityLifecycleCallbacks(new Invalidator());
+        }
+    }
+
+    /**
+     * counts the started activities, on the main thread
+     */
+    private static final class Invalidator implements Application.ActivityLifecycleCallbacks {
+
+        private int mStarted;
+        /**
+         * an activity is being recreated, the app stays in the foreground
+         */
+        private boolean mChangingConfigurations;
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            if (mChangingConfigurations) {
+                mChangingConfigurations = false;
+                return;
+            }
+            if (mStarted++ == 0) {
+                // back to the foreground
+                invalidate();
+            }
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            if (activity.isChangingConfigurations()) {
+                mChangingConfigurations = true;
+            } else if (mStarted > 0) {
+                mStarted--;
+            }
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+        }
+    }
+}
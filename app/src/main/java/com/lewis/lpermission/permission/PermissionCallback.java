@@ -0,0 +1,18 @@
+package com.lewis.lpermission.permission;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: receives the result of a request made with {@link LPermission#callback(PermissionCallback)},
+ * on the main thread, instead of the annotated methods of the host
+ */
+
+public interface PermissionCallback {
+
+    /**
+     * @param result outcome of every requested permission
+     */
+    void onResult(@NonNull PermissionResult result);
+}
@@ -0,0 +1,58 @@
+package com.lewis.lpermission.permission;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: calls the permission callbacks of a class directly, implementations are generated
+ * by the lpermission compiler as {@code <Class>_PermissionDispatcher}
+ */
+
+public interface PermissionDispatcher<T> {
+
+    /**
+     * suffix of the generated class name
+     */
+    String SUFFIX = "_PermissionDispatcher";
+
+    /**
+     * {@link PermissionGranted} methods, every permission is granted
+     */
+    int GRANTED = 0;
+    /**
+     * {@link PermissionDenied} methods
+     */
+    int DENIED = 1;
+    /**
+     * {@link PermissionRationale} methods
+     */
+    int RATIONALE = 2;
+    /**
+     * {@link PermissionNeverAskAgain} methods
+     */
+    int NEVER_ASK_AGAIN = 3;
+    /**
+     * {@link PermissionGranted} methods with {@link PermissionGranted#partial()}, some of the
+     * permissions are granted
+     */
+    int PARTIALLY_GRANTED = 4;
+
+    /**
+     * @return true if a callback takes a {@link PermissionResult}, otherwise the result passed to
+     * {@link #dispatch(Object, int, int, PermissionResult)} may be null
+     */
+    boolean acceptsResult();
+
+    /**
+     * call the methods of target of the type and request code
+     *
+     * @param target      object that declares the callbacks
+     * @param type        {@link #GRANTED}, {@link #DENIED}, {@link #RATIONALE}, {@link #NEVER_ASK_AGAIN}
+     *                    or {@link #PARTIALLY_GRANTED}
+     * @param requestCode request code
+     * @param result      passed to callbacks that take it
+     */
+    void dispatch(@NonNull T target, int type, int requestCode, @Nullable PermissionResult result);
+}
@@ -0,0 +1,522 @@
+package com.lewis.lpermission.permission;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.FragmentManager;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: a retained fragment without UI that requests permissions on behalf of its activity
+ * or one of its fragments, and dispatches the result itself so the host doesn't have to forward
+ * onRequestPermissionsResult. It also schedules the requests of its activity, so only one system
+ * dialog is shown at a time and overlapping requests share it. Pending requests are kept in the
+ * saved state, so a result that arrives after the process was killed still reaches the recreated
+ * host, except for requests made with a callback. Fragment hosts are only held weakly: the result
+ * goes to the fragment that was requesting, or to the one recreated in its place, and is dropped
+ * when neither is there
+ */
+
+public class PermissionFragment extends Fragment {
+
+    private static final String TAG = "com.lewis.lpermission.permission.PermissionFragment";
+
+    /**
+     * request codes of fragments must fit in the lower 16 bits
+     */
+    private static final int MAX_REQUEST_CODE = 0xffff;
+
+    private static final String STATE_NEXT_REQUEST_CODE = "next_request_code";
+    private static final String STATE_IN_FLIGHT_CODE = "in_flight_code";
+    private static final String STATE_IN_FLIGHT_PERMISSIONS = "in_flight_permissions";
+    private static final String STATE_IN_FLIGHT = "in_flight";
+    private static final String STATE_QUEUE = "queue";
+    private static final String STATE_REQUEST_CODE = "request_code";
+    private static final String STATE_PERMISSIONS = "permissions";
+    private static final String STATE_HOST = "host";
+    private static final String STATE_FRAMEWORK = "framework";
+    private static final String STATE_PARENT = "parent";
+    private static final String STATE_FRAGMENT = "fragment";
+    private static final String STATE_CLASS = "class";
+    private static final String STATE_TAG = "tag";
+    private static final String STATE_ID = "id";
+
+    /**
+     * {@link PendingRequest#attachCount} of the requests restored from the saved state
+     */
+    private static final int RESTORED = -1;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            mFlushPosted = false;
+            flush();
+        }
+    };
+
+    /**
+     * requests not sent to the system yet
+     */
+    private final List<PendingRequest> mQueue = new ArrayList<>();
+    /**
+     * the batch the system is showing, only one at a time
+     */
+    private Batch mInFlight;
+    private boolean mFlushPosted;
+    private int mNextRequestCode;
+    /**
+     * increased each time the fragment is attached, to an activity recreated or not
+     */
+    private int mAttachCount;
+
+    /**
+     * find or add the fragment of an activity
+     *
+     * @param activity the activity
+     * @return {@link PermissionFragment}, null if it can't be added right now
+     */
+    @Nullable
+    static PermissionFragment attach(@NonNull FragmentActivity activity) {
+        PermissionFragment fragment = find(activity);
+        if (fragment != null) {
+            return fragment;
+        }
+        FragmentManager manager = activity.getSupportFragmentManager();
+        fragment = new PermissionFragment();
+        try {
+            manager.beginTransaction().add(fragment, TAG).commitNowAllowingStateLoss();
+        } catch (IllegalStateException e) {
+            // the manager is executing transactions, the caller tries again once it is done
+            return null;
+        }
+        return fragment;
+    }
+
+    /**
+     * @param activity the activity
+     * @return the fragment of the activity, null if it has none
+     */
+    @Nullable
+    static PermissionFragment find(@NonNull FragmentActivity activity) {
+        return (PermissionFragment) activity.getSupportFragmentManager().findFragmentByTag(TAG);
+    }
+
+    @Override
+    public void onAttach(Context context) {
+        super.onAttach(context);
+        mAttachCount++;
+    }
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setRetainInstance(true);
+        if (savedInstanceState != null) {
+            restore(savedInstanceState);
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(STATE_NEXT_REQUEST_CODE, mNextRequestCode);
+        if (mInFlight != null) {
+            outState.putInt(STATE_IN_FLIGHT_CODE, mInFlight.requestCode);
+            outState.putStringArray(STATE_IN_FLIGHT_PERMISSIONS, mInFlight.permissions);
+            outState.putParcelableArrayList(STATE_IN_FLIGHT, save(mInFlight.requests));
+        }
+        if (!mQueue.isEmpty()) {
+            outState.putParcelableArrayList(STATE_QUEUE, save(mQueue));
+        }
+    }
+
+    /**
+     * the process was killed, the system may still report the result of the batch it was asking
+     */
+    private void restore(Bundle state) {
+        mNextRequestCode = state.getInt(STATE_NEXT_REQUEST_CODE);
+        String[] permissions = state.getStringArray(STATE_IN_FLIGHT_PERMISSIONS);
+        if (permissions != null) {
+            mInFlight = new Batch(state.getInt(STATE_IN_FLIGHT_CODE), PermissionSet.of(permissions), permissions);
+            restore(state.<Bundle>getParcelableArrayList(STATE_IN_FLIGHT), mInFlight.requests);
+        }
+        restore(state.<Bundle>getParcelableArrayList(STATE_QUEUE), mQueue);
+        if (mInFlight == null && !mQueue.isEmpty()) {
+            mFlushPosted = true;
+            mHandler.post(mFlush);
+        }
+    }
+
+    private static void restore(List<Bundle> states, List<PendingRequest> requests) {
+        if (states == null) return;
+        for (Bundle state : states) {
+            Bundle host = state.getBundle(STATE_HOST);
+            requests.add(new PendingRequest(null, host == null, state.getInt(STATE_REQUEST_CODE),
+                    state.getStringArray(STATE_PERMISSIONS), null, 0, host, RESTORED));
+        }
+    }
+
+    /**
+     * requests with a callback can't be saved, nor can those of a fragment that is not added
+     */
+    private ArrayList<Bundle> save(List<PendingRequest> requests) {
+        ArrayList<Bundle> states = new ArrayList<>(requests.size());
+        for (PendingRequest request : requests) {
+            if (request.callback != null) continue;
+            Bundle state = new Bundle();
+            state.putInt(STATE_REQUEST_CODE, request.requestCode);
+            state.putStringArray(STATE_PERMISSIONS, request.permissions);
+            if (!request.isActivity) {
+                Object live = request.host != null ? request.host.get() : null;
+                Bundle host = request.hostState != null ? request.hostState : live != null ? saveHost(live) : null;
+                if (host == null) continue;
+                state.putBundle(STATE_HOST, host);
+            }
+            states.add(state);
+        }
+        return states;
+    }
+
+    /**
+     * locate a fragment through the fragment managers, so it can be found again once recreated.
+     * Requests only get here from API 23, nested framework fragments are supported
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @Nullable
+    private Bundle saveHost(Object host) {
+        Bundle state = new Bundle();
+        state.putString(STATE_CLASS, host.getClass().getName());
+        try {
+            if (host instanceof Fragment) {
+                Fragment fragment = (Fragment) host;
+                state.putString(STATE_TAG, fragment.getTag());
+                state.putInt(STATE_ID, fragment.getId());
+                Fragment parent = fragment.getParentFragment();
+                if (parent != null) {
+                    Bundle parentState = saveHost(parent);
+                    if (parentState == null) return null;
+                    state.putBundle(STATE_PARENT, parentState);
+                    parent.getChildFragmentManager().putFragment(state, STATE_FRAGMENT, fragment);
+                } else {
+                    getActivity().getSupportFragmentManager().putFragment(state, STATE_FRAGMENT, fragment);
+                }
+            } else {
+                android.app.Fragment fragment = (android.app.Fragment) host;
+                android.app.Fragment parent = fragment.getParentFragment();
+                state.putString(STATE_TAG, fragment.getTag());
+                state.putInt(STATE_ID, fragment.getId());
+                state.putBoolean(STATE_FRAMEWORK, true);
+                if (parent != null) {
+                    Bundle parentState = saveHost(parent);
+                    if (parentState == null) return null;
+                    state.putBundle(STATE_PARENT, parentState);
+                    parent.getChildFragmentManager().putFragment(state, STATE_FRAGMENT, fragment);
+                } else {
+                    getActivity().getFragmentManager().putFragment(state, STATE_FRAGMENT, fragment);
+                }
+            }
+        } catch (IllegalStateException e) {
+            // the fragment is not added, its result will be lost anyway
+            return null;
+        }
+        return state;
+    }
+
+    /**
+     * find a fragment saved by {@link #saveHost(Object)} once it is recreated
+     *
+     * @return null if the fragment, or one of its parents, was not recreated. The index of a
+     * removed fragment is reused, so the fragment found must be the one that was saved
+     */
+    @Nullable
+    private Object restoreHost(Bundle state) {
+        Object host = findHost(state);
+        return host != null && isSame(host, state) ? host : null;
+    }
+
+    private static boolean isSame(Object host, Bundle state) {
+        if (!host.getClass().getName().equals(state.getString(STATE_CLASS))) return false;
+        String tag;
+        int id;
+        if (host instanceof Fragment) {
+            tag = ((Fragment) host).getTag();
+            id = ((Fragment) host).getId();
+        } else {
+            tag = ((android.app.Fragment) host).getTag();
+            id = ((android.app.Fragment) host).getId();
+        }
+        String savedTag = state.getString(STATE_TAG);
+        return id == state.getInt(STATE_ID) && (tag == null ? savedTag == null : tag.equals(savedTag));
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    @Nullable
+    private Object findHost(Bundle state) {
+        FragmentActivity activity = getActivity();
+        if (activity == null) return null;
+        try {
+            Bundle parentState = state.getBundle(STATE_PARENT);
+            if (state.getBoolean(STATE_FRAMEWORK)) {
+                if (parentState == null) {
+                    return activity.getFragmentManager().getFragment(state, STATE_FRAGMENT);
+                }
+                Object parent = restoreHost(parentState);
+                return parent != null
+                        ? ((android.app.Fragment) parent).getChildFragmentManager().getFragment(state, STATE_FRAGMENT) : null;
+            }
+            if (parentState == null) {
+                return activity.getSupportFragmentManager().getFragment(state, STATE_FRAGMENT);
+            }
+            Object parent = restoreHost(parentState);
+            return parent != null ? ((Fragment) parent).getChildFragmentManager().getFragment(state, STATE_FRAGMENT) : null;
+        } catch (IllegalStateException e) {
+            // the fragment was not recreated
+            return null;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mHandler.removeCallbacks(mFlush);
+        mFlushPosted = false;
+    }
+
+    /**
+     * request permissions, the result is dispatched to the host. Requests made in the same
+     * main loop turn are merged into one system request, requests made while the system is
+     * asking for other permissions wait their turn, unless every permission they need is
+     * already being asked
+     *
+     * @param host        the activity of this fragment or one of its fragments
+     * @param requestCode request code of the host
+     * @param permissions permissions
+     * @param callback    receives the result, null to call the annotated methods of the host
+     * @param start       time of the request, for the {@link PermissionMetrics}
+     */
+    void request(@NonNull Object host, int requestCode, @NonNull String[] permissions,
+                 @Nullable PermissionCallback callback, long start) {
+        boolean isActivity = host == getActivity();
+        boolean isFragment = !isActivity && callback == null;
+        PendingRequest request = new PendingRequest(isFragment ? host : null, isActivity,
+                requestCode, permissions, callback, start, isFragment ? saveHost(host) : null, mAttachCount);
+        if (mInFlight != null && mInFlight.requested.containsAll(request.set)) {
+            // the system is already asking
+            Metrics.end(PermissionMetrics.REQUEST, requestCode, start);
+            mInFlight.requests.add(request);
+            return;
+        }
+        mQueue.add(request);
+        if (mInFlight == null && !mFlushPosted) {
+            mFlushPosted = true;
+            mHandler.post(mFlush);
+        }
+    }
+
+    /**
+     * forget the requests of a callback, the system may still be asking for them but their result
+     * is not dispatched
+     *
+     * @param callback callback of the requests
+     */
+    void cancel(@NonNull PermissionCallback callback) {
+        remove(mQueue, callback);
+        if (mInFlight != null) {
+            remove(mInFlight.requests, callback);
+        }
+    }
+
+    /**
+     * @return true if a request of the callback is queued or being asked
+     */
+    @VisibleForTesting
+    boolean isPending(@NonNull Object callback) {
+        return contains(mQueue, callback) || mInFlight != null && contains(mInFlight.requests, callback);
+    }
+
+    private static boolean contains(List<PendingRequest> requests, Object callback) {
+        for (PendingRequest request : requests) {
+            if (request.callback == callback) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void remove(List<PendingRequest> requests, PermissionCallback callback) {
+        for (int i = requests.size() - 1; i >= 0; i--) {
+            if (requests.get(i).callback == callback) {
+                requests.remove(i);
+            }
+        }
+    }
+
+    /**
+     * send every queued request to the system as one batch, planned by {@link PermissionPlanner}
+     */
+    private void flush() {
+        if (mInFlight != null || mQueue.isEmpty() || !isAdded()) return;
+        PermissionSet requested = PermissionSet.EMPTY;
+        String[][] queued = new String[mQueue.size()][];
+        for (int i = 0; i < queued.length; i++) {
+            PendingRequest request = mQueue.get(i);
+            requested = requested.union(request.set);
+            queued[i] = request.permissions;
+        }
+        String[] permissions = PermissionPlanner.plan(getContext(), queued);
+        Batch batch = new Batch(mNextRequestCode, requested, permissions);
+        mNextRequestCode = (mNextRequestCode + 1) & MAX_REQUEST_CODE;
+        batch.requests.addAll(mQueue);
+        mQueue.clear();
+        for (PendingRequest request : batch.requests) {
+            Metrics.end(PermissionMetrics.REQUEST, request.requestCode, request.start);
+        }
+        if (permissions.length == 0) {
+            // everything was granted meanwhile, there is nothing to ask
+            dispatch(batch, permissions, new int[0]);
+            flush();
+            return;
+        }
+        mInFlight = batch;
+        requestPermissions(batch.permissions, batch.requestCode);
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        Batch batch = mInFlight;
+        if (batch == null || batch.requestCode != requestCode) {
+            super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+            return;
+        }
+        mInFlight = null;
+        dispatch(batch, permissions, grantResults);
+        flush();
+    }
+
+    private void dispatch(Batch batch, String[] permissions, int[] grantResults) {
+        String[] deniedPermissions = new String[permissions.length];
+        int deniedCount = 0;
+        for (int i = 0; i < permissions.length && i < grantResults.length; i++) {
+            if (grantResults[i] != PackageManager.PERMISSION_GRANTED) {
+                deniedPermissions[deniedCount++] = permissions[i];
+            }
+        }
+        PermissionSet denied = PermissionSet.of(Arrays.copyOf(deniedPermissions, deniedCount));
+        boolean cancelled = grantResults.length == 0 && permissions.length > 0;
+        for (PendingRequest request : batch.requests) {
+            Object host = hostOf(request);
+            int[] results = cancelled || Arrays.equals(request.permissions, permissions)
+                    ? grantResults : resultsOf(request.permissions, denied);
+            LPermission.onPermissionResult(getActivity(), host, request.requestCode, request.permissions,
+                    results, request.callback);
+        }
+    }
+
+    /**
+     * the host to dispatch a request to. A retained fragment outlives its activity and the
+     * fragments of it, the result belongs to the current ones. The saved location of a fragment is
+     * only used once the activity was recreated, a fragment removed meanwhile is simply gone
+     *
+     * @return null if the host is gone and was not recreated
+     */
+    @Nullable
+    private Object hostOf(PendingRequest request) {
+        if (request.isActivity) {
+            return getActivity();
+        }
+        Object host = request.host != null ? request.host.get() : null;
+        if (host instanceof Fragment ? ((Fragment) host).isAdded()
+                : host instanceof android.app.Fragment && ((android.app.Fragment) host).isAdded()) {
+            return host;
+        }
+        if (request.hostState == null || request.attachCount == mAttachCount) {
+            return null;
+        }
+        return restoreHost(request.hostState);
+    }
+
+    /**
+     * the results of a request, taken from the results of its batch. Permissions left out of the
+     * batch were already granted
+     *
+     * @param denied the permissions the system denied
+     */
+    private static int[] resultsOf(String[] requested, PermissionSet denied) {
+        int[] results = new int[requested.length];
+        for (int i = 0; i < requested.length; i++) {
+            results[i] = denied.contains(requested[i])
+                    ? PackageManager.PERMISSION_DENIED : PackageManager.PERMISSION_GRANTED;
+        }
+        return results;
+    }
+
+    private static final class PendingRequest {
+        /**
+         * the fragment that requested, null for the activity, callbacks and restored requests
+         */
+        final WeakReference<Object> host;
+        final boolean isActivity;
+        final int requestCode;
+        final String[] permissions;
+        final PermissionSet set;
+        final PermissionCallback callback;
+        final long start;
+        /**
+         * saved location of the fragment host, to find it again once it is recreated
+         */
+        final Bundle hostState;
+        /**
+         * attach count of the fragment when the request was made, {@link #RESTORED} for
+         * restored requests
+         */
+        final int attachCount;
+
+        PendingRequest(Object host, boolean isActivity, int requestCode, String[] permissions,
+                       PermissionCallback callback, long start, Bundle hostState, int attachCount) {
+            this.host = host != null ? new WeakReference<>(host) : null;
+            this.isActivity = isActivity;
+            this.requestCode = requestCode;
+            this.permissions = permissions;
+            this.set = PermissionSet.of(permissions);
+            this.callback = callback;
+            this.start = start;
+            this.hostState = hostState;
+            this.attachCount = attachCount;
+        }
+    }
+
+    private static final class Batch {
+        final int requestCode;
+        /**
+         * the permissions of the requests, those left out of {@link #permissions} were granted
+         */
+        final PermissionSet requested;
+        /**
+         * the permissions asked to the system
+         */
+        final String[] permissions;
+        final List<PendingRequest> requests = new ArrayList<>();
+
+        Batch(int requestCode, PermissionSet requested, String[] permissions) {
+            this.requestCode = requestCode;
+            this.requested = requested;
+            this.permissions = permissions;
+        }
+    }
+}
@@ -15,4 +15,11 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 public @interface PermissionGranted {
     int value() default 0;
+
+    /**
+     * true to also be called when only some of the permissions are granted, before the
+     * {@link PermissionDenied} or {@link PermissionNeverAskAgain} methods. Take a
+     * {@link PermissionResult} parameter to know which ones
+     */
+    boolean partial() default false;
 }
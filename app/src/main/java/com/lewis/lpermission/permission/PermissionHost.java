@@ -0,0 +1,217 @@
+package com.lewis.lpermission.permission;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.Fragment;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: the object that requests permissions, an Activity, a framework or support Fragment,
+ * or a Context which can only check them. Callbacks are always called on the host itself, never
+ * on the activity of a fragment. The host is only held weakly, nothing is dispatched once it is gone
+ */
+
+abstract class PermissionHost {
+
+    private final WeakReference<Object> mTarget;
+    private final Class<?> mType;
+    /**
+     * callbacks of the class of the target, looked up on first use
+     */
+    private CallbackIndex mIndex;
+
+    private PermissionHost(@NonNull Object target) {
+        this.mTarget = new WeakReference<>(target);
+        this.mType = target.getClass();
+    }
+
+    /**
+     * @param object an Activity, a Fragment or a Context
+     * @return {@link PermissionHost}
+     */
+    @NonNull
+    static PermissionHost of(@NonNull Object object) {
+        if (object instanceof Activity) {
+            return new ActivityHost((Activity) object);
+        } else if (object instanceof Fragment) {
+            return new SupportFragmentHost((Fragment) object);
+        } else if (object instanceof android.app.Fragment) {
+            return new FragmentHost((android.app.Fragment) object);
+        } else if (object instanceof Context) {
+            return new ContextHost((Context) object);
+        }
+        throw new IllegalArgumentException(object.getClass().getName() + " is not supported!");
+    }
+
+    /**
+     * @return the requester, which declares the callbacks, null once it was collected
+     */
+    @Nullable
+    Object getTarget() {
+        return mTarget.get();
+    }
+
+    /**
+     * @return class name of the requester, for error messages
+     */
+    @NonNull
+    String getName() {
+        return mType.getName();
+    }
+
+    /**
+     * @return the activity of the host, null if it has none, is detached or gone
+     */
+    @Nullable
+    abstract Activity getActivity();
+
+    /**
+     * @return context to check permissions with, null if the host is detached or gone
+     */
+    @Nullable
+    Context getContext() {
+        return getActivity();
+    }
+
+    /**
+     * @return true if the host can show the system dialog
+     */
+    boolean canRequest() {
+        return true;
+    }
+
+    /**
+     * ask the system directly, the host must forward the result to
+     * {@link LPermission#onPermissionResult(Object, int, String[], int[])}
+     */
+    abstract void requestPermissions(@NonNull String[] permissions, int requestCode);
+
+    boolean acceptsResult() {
+        return index().acceptsResult();
+    }
+
+    /**
+     * call the callbacks of the host
+     *
+     * @param type        one of the {@link PermissionDispatcher} types
+     * @param requestCode request code
+     * @param result      passed to callbacks that take it
+     */
+    void dispatch(int type, int requestCode, @Nullable PermissionResult result) {
+        Object target = mTarget.get();
+        if (target != null) {
+            index().dispatch(target, type, requestCode, result);
+        }
+    }
+
+    private CallbackIndex index() {
+        if (mIndex == null) {
+            mIndex = CallbackIndex.of(mType);
+        }
+        return mIndex;
+    }
+
+    private static final class ActivityHost extends PermissionHost {
+
+        ActivityHost(Activity activity) {
+            super(activity);
+        }
+
+        @Override
+        Activity getActivity() {
+            return (Activity) getTarget();
+        }
+
+        @TargetApi(Build.VERSION_CODES.M)
+        @Override
+        void requestPermissions(@NonNull String[] permissions, int requestCode) {
+            Activity activity = getActivity();
+            if (activity != null) {
+                activity.requestPermissions(permissions, requestCode);
+            }
+        }
+    }
+
+    private static final class FragmentHost extends PermissionHost {
+
+        FragmentHost(android.app.Fragment fragment) {
+            super(fragment);
+        }
+
+        @Override
+        Activity getActivity() {
+            android.app.Fragment fragment = (android.app.Fragment) getTarget();
+            return fragment != null ? fragment.getActivity() : null;
+        }
+
+        @TargetApi(Build.VERSION_CODES.M)
+        @Override
+        void requestPermissions(@NonNull String[] permissions, int requestCode) {
+            android.app.Fragment fragment = (android.app.Fragment) getTarget();
+            if (fragment != null) {
+                fragment.requestPermissions(permissions, requestCode);
+            }
+        }
+    }
+
+    private static final class SupportFragmentHost extends PermissionHost {
+
+        SupportFragmentHost(Fragment fragment) {
+            super(fragment);
+        }
+
+        @Override
+        Activity getActivity() {
+            Fragment fragment = (Fragment) getTarget();
+            return fragment != null ? fragment.getActivity() : null;
+        }
+
+        @Override
+        Context getContext() {
+            Fragment fragment = (Fragment) getTarget();
+            return fragment != null ? fragment.getContext() : null;
+        }
+
+        @Override
+        void requestPermissions(@NonNull String[] permissions, int requestCode) {
+            Fragment fragment = (Fragment) getTarget();
+            if (fragment != null) {
+                fragment.requestPermissions(permissions, requestCode);
+            }
+        }
+    }
+
+    private static final class ContextHost extends PermissionHost {
+
+        ContextHost(Context context) {
+            super(context);
+        }
+
+        @Override
+        Activity getActivity() {
+            return null;
+        }
+
+        @Override
+        Context getContext() {
+            return (Context) getTarget();
+        }
+
+        @Override
+        boolean canRequest() {
+            return false;
+        }
+
+        @Override
+        void requestPermissions(@NonNull String[] permissions, int requestCode) {
+            throw new IllegalArgumentException(getName() + " is not supported!");
+        }
+    }
+}
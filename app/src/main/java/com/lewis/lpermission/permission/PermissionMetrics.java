@@ -0,0 +1,50 @@
+package com.lewis.lpermission.permission;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: receives the timing of every stage of a request, set it with
+ * {@link LPermission#setMetrics(PermissionMetrics)}. It is called on the thread of the stage,
+ * usually the main thread, so it should only record
+ */
+
+public interface PermissionMetrics {
+
+    /**
+     * checking whether the permissions are granted
+     */
+    int CHECK = 0;
+    /**
+     * checking whether a rationale should be shown, and showing it
+     */
+    int RATIONALE = 1;
+    /**
+     * from {@link LPermission#request()} until the system is asked
+     */
+    int REQUEST = 2;
+    /**
+     * classifying the result reported by the system
+     */
+    int RESULT = 3;
+    /**
+     * calling the callbacks of a result
+     */
+    int CALLBACK = 4;
+
+    int STAGE_COUNT = 5;
+
+    /**
+     * @param stage       {@link #CHECK}, {@link #RATIONALE}, {@link #REQUEST}, {@link #RESULT}
+     *                    or {@link #CALLBACK}
+     * @param requestCode request code
+     * @param nanos       duration of the stage
+     */
+    void onStage(int stage, int requestCode, long nanos);
+
+    /**
+     * @param requestCode request code
+     * @param count       permission checks that went to the system instead of the
+     *                    {@link PermissionCache}, rationale checks included
+     */
+    void onSystemCalls(int requestCode, int count);
+}
@@ -0,0 +1,257 @@
+package com.lewis.lpermission.permission;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.FragmentManager;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: a request as a cold stream, built with {@link LPermission#observe()}. Nothing is
+ * requested until a subscription, which emits the outcome of every permission and completes.
+ * A subscription is cancelled when its host is destroyed, but not when the activity is recreated
+ * for a configuration change, the outcomes are then emitted once the system answers, as for the
+ * recreated activity. Subscriptions made together for the same permissions share one system
+ * request, as every request of an activity does. It only holds its host weakly, so it can be kept
+ * as a constant
+ */
+
+public final class PermissionObservable {
+
+    /**
+     * receives the result of a subscription, on the main thread
+     */
+    public interface Observer {
+
+        /**
+         * @param permission a requested permission, in request order
+         * @param outcome    {@link PermissionResult#GRANTED}, {@link PermissionResult#DENIED},
+         *                   {@link PermissionResult#RATIONALE} or {@link PermissionResult#NEVER_ASK_AGAIN}
+         */
+        void onNext(@NonNull String permission, int outcome);
+
+        /**
+         * the request failed, nothing else is emitted
+         */
+        void onError(@NonNull Throwable error);
+
+        /**
+         * every outcome was emitted
+         */
+        void onComplete();
+    }
+
+    public interface Subscription {
+
+        /**
+         * stop the subscription, the observer and the host are released right away and the
+         * result is not dispatched. Nothing happens once the subscription completed or failed
+         */
+        @MainThread
+        void cancel();
+
+        boolean isCancelled();
+    }
+
+    private final WeakReference<Object> mHost;
+    private final int mRequestCode;
+    private final String[] mPermissions;
+    private final boolean mIsCheck;
+
+    PermissionObservable(@NonNull Object host, int requestCode, @NonNull String[] permissions, boolean isCheck) {
+        this.mHost = new WeakReference<>(host);
+        this.mRequestCode = requestCode;
+        this.mPermissions = permissions.clone();
+        this.mIsCheck = isCheck;
+    }
+
+    /**
+     * request the permissions
+     *
+     * @param observer receives the outcomes
+     * @return {@link Subscription}
+     */
+    @MainThread
+    @NonNull
+    public Subscription subscribe(@NonNull Observer observer) {
+        HostSubscription subscription = new HostSubscription(observer);
+        Object host = mHost.get();
+        if (host == null) {
+            subscription.error(new IllegalStateException("The host is gone"));
+            return subscription;
+        }
+        subscription.bind(host);
+        try {
+            new PermissionRequest(host, mRequestCode, mPermissions, mIsCheck, subscription).execute();
+        } catch (RuntimeException e) {
+            subscription.error(e);
+        }
+        return subscription;
+    }
+
+    /**
+     * follows the lifecycle of the host until the result arrives or it is cancelled
+     */
+    private static final class HostSubscription implements Subscription, PermissionCallback {
+
+        private Observer mObserver;
+        private boolean mCancelled;
+        private Activity mActivity;
+        /**
+         * class of the activity being recreated for a configuration change, mActivity is null
+         * until it is created again
+         */
+        private Class<?> mRecreating;
+        private Application mApplication;
+        private Application.ActivityLifecycleCallbacks mActivityCallbacks;
+        private Fragment mFragment;
+        private FragmentManager mFragmentManager;
+        private FragmentManager.FragmentLifecycleCallbacks mFragmentCallbacks;
+
+        HostSubscription(Observer observer) {
+            this.mObserver = observer;
+        }
+
+        void bind(Object host) {
+            if (host instanceof Fragment && ((Fragment) host).getFragmentManager() != null) {
+                mFragment = (Fragment) host;
+                mFragmentManager = mFragment.getFragmentManager();
+                mFragmentCallbacks = new FragmentManager.FragmentLifecycleCallbacks() {
+                    @Override
+                    public void onFragmentDestroyed(FragmentManager manager, Fragment fragment) {
+                        if (fragment != mFragment) return;
+                        if (fragment.getActivity() != null && fragment.getActivity().isChangingConfigurations()) {
+                            // the activity follows the recreation, the new fragment is not known
+                            unbindFragment();
+                            return;
+                        }
+                        cancel();
+                    }
+                };
+                mFragmentManager.registerFragmentLifecycleCallbacks(mFragmentCallbacks, false);
+            }
+            Activity activity = PermissionUtil.getActivity(host);
+            if (activity != null) {
+                mActivity = activity;
+                mApplication = activity.getApplication();
+                mActivityCallbacks = new ActivityDestroyedCallbacks() {
+                    @Override
+                    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+                        if (activity.getClass() == mRecreating) {
+                            mRecreating = null;
+                            mActivity = activity;
+                        }
+                    }
+
+                    @Override
+                    public void onActivityDestroyed(Activity activity) {
+                        if (activity != mActivity) return;
+                        if (activity.isChangingConfigurations()) {
+                            // the retained PermissionFragment still delivers the result
+                            mRecreating = activity.getClass();
+                            mActivity = null;
+                            return;
+                        }
+                        cancel();
+                    }
+                };
+                mApplication.registerActivityLifecycleCallbacks(mActivityCallbacks);
+            }
+        }
+
+        @Override
+        public void onResult(@NonNull PermissionResult result) {
+            if (mObserver == null) return;
+            Observer observer = mObserver;
+            release();
+            for (Map.Entry<String, Integer> outcome : result.toMap().entrySet()) {
+                observer.onNext(outcome.getKey(), outcome.getValue());
+            }
+            observer.onComplete();
+        }
+
+        void error(Throwable error) {
+            if (mObserver == null) return;
+            Observer observer = mObserver;
+            release();
+            observer.onError(error);
+        }
+
+        @Override
+        public void cancel() {
+            if (mObserver == null) {
+                // cancelled, completed or failed already
+                return;
+            }
+            mCancelled = true;
+            if (mActivity instanceof FragmentActivity) {
+                PermissionFragment fragment = PermissionFragment.find((FragmentActivity) mActivity);
+                if (fragment != null) {
+                    fragment.cancel(this);
+                }
+            }
+            release();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        private void release() {
+            unbindFragment();
+            if (mActivityCallbacks != null) {
+                mApplication.unregisterActivityLifecycleCallbacks(mActivityCallbacks);
+            }
+            mObserver = null;
+            mActivity = null;
+            mRecreating = null;
+            mApplication = null;
+            mActivityCallbacks = null;
+        }
+
+        private void unbindFragment() {
+            if (mFragmentCallbacks != null) {
+                mFragmentManager.unregisterFragmentLifecycleCallbacks(mFragmentCallbacks);
+            }
+            mFragment = null;
+            mFragmentManager = null;
+            mFragmentCallbacks = null;
+        }
+    }
+
+    private abstract static class ActivityDestroyedCallbacks implements Application.ActivityLifecycleCallbacks {
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.lewis.lpermission.permission;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: decides what is sent to the system: granted permissions are left out, so the user
+ * is not prompted for them again, the others are sent once each, in request order
+ */
+
+final class PermissionPlanner {
+
+    /**
+     * the dangerous permissions of API 26, by platform permission group, the
+     * {@link PermissionRegistry} gives them the first ids in this order
+     */
+    static final String[][] GROUPS = {
+            {"android.permission-group.CALENDAR",
+                    "android.permission.READ_CALENDAR", "android.permission.WRITE_CALENDAR"},
+            {"android.permission-group.CAMERA",
+                    "android.permission.CAMERA"},
+            {"android.permission-group.CONTACTS",
+                    "android.permission.READ_CONTACTS", "android.permission.WRITE_CONTACTS",
+                    "android.permission.GET_ACCOUNTS"},
+            {"android.permission-group.LOCATION",
+                    "android.permission.ACCESS_FINE_LOCATION", "android.permission.ACCESS_COARSE_LOCATION"},
+            {"android.permission-group.MICROPHONE",
+                    "android.permission.RECORD_AUDIO"},
+            {"android.permission-group.PHONE",
+                    "android.permission.READ_PHONE_STATE", "android.permission.READ_PHONE_NUMBERS",
+                    "android.permission.CALL_PHONE", "android.permission.ANSWER_PHONE_CALLS",
+                    "android.permission.READ_CALL_LOG", "android.permission.WRITE_CALL_LOG",
+                    "com.android.voicemail.permission.ADD_VOICEMAIL", "android.permission.USE_SIP",
+                    "android.permission.PROCESS_OUTGOING_CALLS"},
+            {"android.permission-group.SENSORS",
+                    "android.permission.BODY_SENSORS"},
+            {"android.permission-group.SMS",
+                    "android.permission.SEND_SMS", "android.permission.RECEIVE_SMS",
+                    "android.permission.READ_SMS", "android.permission.RECEIVE_WAP_PUSH",
+                    "android.permission.RECEIVE_MMS"},
+            {"android.permission-group.STORAGE",
+                    "android.permission.READ_EXTERNAL_STORAGE", "android.permission.WRITE_EXTERNAL_STORAGE"}
+    };
+
+    private PermissionPlanner() {
+    }
+
+    /**
+     * the permissions to send to the system, the states are read from the {@link PermissionCache}
+     *
+     * @param context  calling context
+     * @param requests permissions of the requests sent together
+     * @return the denied permissions in request order, a permission asked twice is sent once.
+     * Empty if every permission is granted
+     */
+    @NonNull
+    static String[] plan(@NonNull Context context, @NonNull String[]... requests) {
+        List<String> planned = new ArrayList<>();
+        PermissionSet checked = PermissionSet.EMPTY;
+        for (String[] permissions : requests) {
+            for (String permission : permissions) {
+                if (checked.contains(permission)) continue;
+                checked = checked.union(PermissionSet.of(permission));
+                if (PermissionCache.checkSelfPermission(context, permission) != PackageManager.PERMISSION_GRANTED) {
+                    planned.add(permission);
+                }
+            }
+        }
+        return planned.toArray(new String[planned.size()]);
+    }
+}
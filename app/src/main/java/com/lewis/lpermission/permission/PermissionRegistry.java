@@ -0,0 +1,77 @@
+package com.lewis.lpermission.permission;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: gives every permission name a small id, so a set of permissions fits in the bits of
+ * a long, see {@link PermissionSet}. The dangerous permissions are registered first, by group,
+ * others get the next id when they are first used. There is no limit, past 64 ids the sets keep
+ * the extra ids in an array
+ */
+
+public final class PermissionRegistry {
+
+    private static final Object sLock = new Object();
+    private static final ConcurrentHashMap<String, Integer> sIds = new ConcurrentHashMap<>();
+    /**
+     * replaced by a larger copy when full, before the new id is published by the map
+     */
+    private static volatile String[] sNames = new String[PermissionSet.WORD_SIZE];
+    private static int sCount;
+
+    static {
+        for (String[] group : PermissionPlanner.GROUPS) {
+            for (int i = 1; i < group.length; i++) {
+                idOf(group[i]);
+            }
+        }
+    }
+
+    private PermissionRegistry() {
+    }
+
+    /**
+     * @param permission permission
+     * @return the id of the permission, registering it if needed
+     */
+    public static int idOf(@NonNull String permission) {
+        Integer id = sIds.get(permission);
+        if (id != null) {
+            return id;
+        }
+        synchronized (sLock) {
+            id = sIds.get(permission);
+            if (id != null) {
+                return id;
+            }
+            String[] names = sNames;
+            if (sCount == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[sCount] = permission;
+            sNames = names;
+            // the map publishes the name
+            sIds.put(permission, sCount);
+            return sCount++;
+        }
+    }
+
+    /**
+     * @param id id returned by {@link #idOf(String)}
+     * @return the permission
+     */
+    @NonNull
+    public static String nameOf(int id) {
+        String[] names = sNames;
+        String name = id >= 0 && id < names.length ? names[id] : null;
+        if (name == null) {
+            throw new IllegalArgumentException("No permission has id " + id);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,103 @@
+package com.lewis.lpermission.permission;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: an immutable request, built once with {@link LPermission#build()} and executed as
+ * often as needed. While every permission is granted, executing it allocates nothing when the
+ * callbacks of the host are generated. It only holds its host weakly, once the host is gone
+ * executing it does nothing
+ */
+
+public final class PermissionRequest {
+
+    private final PermissionHost mHost;
+    private final int mRequestCode;
+    private final String[] mPermissions;
+    private final boolean mIsCheck;
+    private final PermissionCallback mCallback;
+    /**
+     * result of a request where every permission is granted, created on first use
+     */
+    private PermissionResult mGranted;
+
+    PermissionRequest(@NonNull Object host, int requestCode, @NonNull String[] permissions, boolean isCheck,
+                      @Nullable PermissionCallback callback) {
+        this.mHost = PermissionHost.of(host);
+        this.mRequestCode = requestCode;
+        this.mPermissions = permissions.clone();
+        this.mIsCheck = isCheck;
+        this.mCallback = callback;
+    }
+
+    public int getRequestCode() {
+        return mRequestCode;
+    }
+
+    /**
+     * @return a copy of the permissions
+     */
+    @NonNull
+    public String[] getPermissions() {
+        return mPermissions.clone();
+    }
+
+    /**
+     * request the permissions, the host or the callback is called right away if they are granted
+     */
+    public void execute() {
+        if (mHost.getTarget() == null) {
+            return;
+        }
+        long start = Metrics.start();
+        if (!PermissionUtil.isLowerMarshmallow()) {
+            if (!isAllGranted(mHost.getContext())) {
+                // the request checks again, and measures that check
+                LPermission.request(mHost, mRequestCode, mPermissions, mIsCheck, mCallback, start);
+                return;
+            }
+            Metrics.end(PermissionMetrics.CHECK, mRequestCode, start);
+        }
+        if (mCallback != null) {
+            LPermission.deliver(mCallback, granted());
+        } else {
+            LPermission.doExecuteSuccess(mHost, mRequestCode, mHost.acceptsResult() ? granted() : null);
+        }
+    }
+
+    /**
+     * stops at the first denied permission, the request checks them all again from the cache.
+     * The system calls are only counted when every permission is granted
+     */
+    private boolean isAllGranted(Context context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Can't check permission for null context");
+        }
+        boolean measured = Metrics.isEnabled();
+        int systemCalls = 0;
+        for (String permission : mPermissions) {
+            if (measured && !PermissionCache.isCached(permission)) {
+                systemCalls++;
+            }
+            if (PermissionCache.checkSelfPermission(context, permission) != PackageManager.PERMISSION_GRANTED) {
+                return false;
+            }
+        }
+        if (measured) {
+            Metrics.systemCalls(mRequestCode, systemCalls);
+        }
+        return true;
+    }
+
+    private PermissionResult granted() {
+        if (mGranted == null) {
+            mGranted = PermissionResult.granted(mRequestCode, mPermissions);
+        }
+        return mGranted;
+    }
+}
@@ -0,0 +1,182 @@
+package com.lewis.lpermission.permission;
+
+import android.app.Activity;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.ActivityCompat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: the outcome of every permission of a request, delivered to {@link PermissionCallback}
+ */
+
+public final class PermissionResult {
+
+    /**
+     * the permission is granted
+     */
+    public static final int GRANTED = 0;
+    /**
+     * the permission is denied, asking again will show the system dialog
+     */
+    public static final int DENIED = 1;
+    /**
+     * the permission is denied and was not requested, a rationale should be shown first
+     */
+    public static final int RATIONALE = 2;
+    /**
+     * the permission is denied and the system won't ask again
+     */
+    public static final int NEVER_ASK_AGAIN = 3;
+    /**
+     * the permission was not part of the request
+     */
+    public static final int UNKNOWN = -1;
+
+    private final int mRequestCode;
+    private final String[] mPermissions;
+    private final int[] mOutcomes;
+
+    private PermissionResult(int requestCode, String[] permissions, int[] outcomes) {
+        this.mRequestCode = requestCode;
+        this.mPermissions = permissions;
+        this.mOutcomes = outcomes;
+    }
+
+    /**
+     * every permission granted
+     */
+    static PermissionResult granted(int requestCode, @NonNull String[] permissions) {
+        return new PermissionResult(requestCode, permissions, new int[permissions.length]);
+    }
+
+    /**
+     * the result of a check, nothing was requested
+     */
+    static PermissionResult of(int requestCode, @NonNull PermissionSnapshot snapshot) {
+        String[] permissions = new String[snapshot.size()];
+        int[] outcomes = new int[snapshot.size()];
+        for (int i = 0; i < permissions.length; i++) {
+            permissions[i] = snapshot.getPermission(i);
+            outcomes[i] = snapshot.isGranted(i) ? GRANTED : snapshot.shouldShowRationale(i) ? RATIONALE : DENIED;
+        }
+        return new PermissionResult(requestCode, permissions, outcomes);
+    }
+
+    /**
+     * the result reported by the system, an empty result means the request was cancelled
+     *
+     * @param activity activity to tell denied from never ask again, null to report both as denied
+     */
+    static PermissionResult of(@Nullable Activity activity, int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        int[] outcomes = new int[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            if (i < grantResults.length && grantResults[i] == PackageManager.PERMISSION_GRANTED) {
+                outcomes[i] = GRANTED;
+            } else if (i >= grantResults.length || activity == null
+                    || ActivityCompat.shouldShowRequestPermissionRationale(activity, permissions[i])) {
+                outcomes[i] = DENIED;
+            } else {
+                outcomes[i] = NEVER_ASK_AGAIN;
+            }
+        }
+        return new PermissionResult(requestCode, permissions, outcomes);
+    }
+
+    public int getRequestCode() {
+        return mRequestCode;
+    }
+
+    @NonNull
+    public String[] getPermissions() {
+        return mPermissions.clone();
+    }
+
+    /**
+     * @param permission a requested permission
+     * @return {@link #GRANTED}, {@link #DENIED}, {@link #RATIONALE}, {@link #NEVER_ASK_AGAIN}
+     * or {@link #UNKNOWN}
+     */
+    public int getOutcome(@NonNull String permission) {
+        for (int i = 0; i < mPermissions.length; i++) {
+            if (mPermissions[i].equals(permission)) {
+                return mOutcomes[i];
+            }
+        }
+        return UNKNOWN;
+    }
+
+    public boolean isGranted(@NonNull String permission) {
+        return getOutcome(permission) == GRANTED;
+    }
+
+    public boolean isAllGranted() {
+        for (int outcome : mOutcomes) {
+            if (outcome != GRANTED) return false;
+        }
+        return true;
+    }
+
+    @NonNull
+    public String[] getGrantedPermissions() {
+        return filter(true);
+    }
+
+    /**
+     * @return the permissions that are not granted, whatever the reason
+     */
+    @NonNull
+    public String[] getDeniedPermissions() {
+        return filter(false);
+    }
+
+    @NonNull
+    public PermissionSet getGrantedSet() {
+        return setOf(true);
+    }
+
+    @NonNull
+    public PermissionSet getDeniedSet() {
+        return setOf(false);
+    }
+
+    /**
+     * @return outcome of every requested permission, in request order
+     */
+    @NonNull
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < mPermissions.length; i++) {
+            map.put(mPermissions[i], mOutcomes[i]);
+        }
+        return map;
+    }
+
+    private PermissionSet setOf(boolean granted) {
+        return PermissionSet.of(filter(granted));
+    }
+
+    private String[] filter(boolean granted) {
+        int count = 0;
+        for (int outcome : mOutcomes) {
+            if ((outcome == GRANTED) == granted) count++;
+        }
+        String[] permissions = new String[count];
+        for (int i = 0, j = 0; i < mPermissions.length; i++) {
+            if ((mOutcomes[i] == GRANTED) == granted) {
+                permissions[j++] = mPermissions[i];
+            }
+        }
+        return permissions;
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionResult{requestCode=" + mRequestCode + ", outcomes=" + toMap() + '}';
+    }
+}
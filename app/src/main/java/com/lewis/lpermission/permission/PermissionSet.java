@@ -0,0 +1,212 @@
+package com.lewis.lpermission.permission;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: an immutable set of permissions, one bit per {@link PermissionRegistry} id. Set
+ * operations are single word operations, and the permissions are listed by id, so those of a
+ * platform group follow each other. Ids past the 64 bits of the word are kept in a sorted array,
+ * which is only allocated by apps using that many permissions
+ */
+
+public final class PermissionSet {
+
+    public static final PermissionSet EMPTY = new PermissionSet(0, null);
+
+    /**
+     * ids below this are bits of the word
+     */
+    static final int WORD_SIZE = Long.SIZE;
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final long mBits;
+    /**
+     * ids from {@link #WORD_SIZE} on, ascending, null if there are none
+     */
+    private final int[] mOverflow;
+
+    private PermissionSet(long bits, int[] overflow) {
+        this.mBits = bits;
+        this.mOverflow = overflow;
+    }
+
+    /**
+     * @param permissions permissions, duplicates are ignored
+     * @return {@link PermissionSet}
+     */
+    @NonNull
+    public static PermissionSet of(@NonNull String... permissions) {
+        long bits = 0;
+        int[] overflow = null;
+        int overflowCount = 0;
+        for (String permission : permissions) {
+            int id = PermissionRegistry.idOf(permission);
+            if (id < WORD_SIZE) {
+                bits |= 1L << id;
+                continue;
+            }
+            if (overflow == null) {
+                overflow = new int[permissions.length];
+            }
+            overflow[overflowCount++] = id;
+        }
+        return of(bits, overflow, overflowCount);
+    }
+
+    static PermissionSet fromBits(long bits) {
+        return bits == 0 ? EMPTY : new PermissionSet(bits, null);
+    }
+
+    /**
+     * @param overflow ids from {@link #WORD_SIZE} on, in any order, duplicates are ignored
+     * @param count    number of ids used in overflow
+     */
+    private static PermissionSet of(long bits, int[] overflow, int count) {
+        if (count == 0) {
+            return fromBits(bits);
+        }
+        Arrays.sort(overflow, 0, count);
+        int unique = 1;
+        for (int i = 1; i < count; i++) {
+            if (overflow[i] != overflow[unique - 1]) {
+                overflow[unique++] = overflow[i];
+            }
+        }
+        return new PermissionSet(bits, overflow.length == unique ? overflow : Arrays.copyOf(overflow, unique));
+    }
+
+    /**
+     * the ids of the word, those from {@link #WORD_SIZE} on are in {@link #overflow()}
+     */
+    long bits() {
+        return mBits;
+    }
+
+    /**
+     * @return ids from {@link #WORD_SIZE} on, ascending, not copied
+     */
+    @NonNull
+    int[] overflow() {
+        return mOverflow != null ? mOverflow : NO_IDS;
+    }
+
+    public boolean contains(@NonNull String permission) {
+        int id = PermissionRegistry.idOf(permission);
+        return id < WORD_SIZE ? (mBits & 1L << id) != 0 : contains(mOverflow, id);
+    }
+
+    public boolean containsAll(@NonNull PermissionSet other) {
+        if ((other.mBits & ~mBits) != 0) {
+            return false;
+        }
+        for (int id : other.overflow()) {
+            if (!contains(mOverflow, id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return mBits == 0 && mOverflow == null;
+    }
+
+    public int size() {
+        return Long.bitCount(mBits) + overflow().length;
+    }
+
+    @NonNull
+    public PermissionSet union(@NonNull PermissionSet other) {
+        if (containsAll(other)) {
+            return this;
+        }
+        if (mOverflow == null && other.mOverflow == null) {
+            return fromBits(mBits | other.mBits);
+        }
+        int[] ids = overflow();
+        int[] otherIds = other.overflow();
+        int[] overflow = Arrays.copyOf(ids, ids.length + otherIds.length);
+        System.arraycopy(otherIds, 0, overflow, ids.length, otherIds.length);
+        return of(mBits | other.mBits, overflow, overflow.length);
+    }
+
+    @NonNull
+    public PermissionSet minus(@NonNull PermissionSet other) {
+        return filter(other, false);
+    }
+
+    @NonNull
+    public PermissionSet intersect(@NonNull PermissionSet other) {
+        return filter(other, true);
+    }
+
+    /**
+     * @param keep true to keep the ids in other, false to keep those not in it
+     */
+    private PermissionSet filter(PermissionSet other, boolean keep) {
+        long bits = keep ? mBits & other.mBits : mBits & ~other.mBits;
+        if (mOverflow == null) {
+            return bits == mBits ? this : fromBits(bits);
+        }
+        int[] overflow = new int[mOverflow.length];
+        int count = 0;
+        for (int id : mOverflow) {
+            if (contains(other.mOverflow, id) == keep) {
+                overflow[count++] = id;
+            }
+        }
+        if (bits == mBits && count == mOverflow.length) {
+            return this;
+        }
+        return of(bits, overflow, count);
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        return ids != null && Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * @return the permissions, by id
+     */
+    @NonNull
+    public String[] toArray() {
+        String[] permissions = new String[size()];
+        long bits = mBits;
+        int i = 0;
+        for (; bits != 0; i++) {
+            permissions[i] = PermissionRegistry.nameOf(Long.numberOfTrailingZeros(bits));
+            bits &= bits - 1;
+        }
+        for (int id : overflow()) {
+            permissions[i++] = PermissionRegistry.nameOf(id);
+        }
+        return permissions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PermissionSet && ((PermissionSet) o).mBits == mBits
+                && Arrays.equals(((PermissionSet) o).mOverflow, mOverflow);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (mBits ^ (mBits >>> 32)) + Arrays.hashCode(mOverflow);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("PermissionSet{");
+        String[] permissions = toArray();
+        for (int i = 0; i < permissions.length; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(permissions[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
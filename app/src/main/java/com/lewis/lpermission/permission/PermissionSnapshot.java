@@ -0,0 +1,148 @@
+package com.lewis.lpermission.permission;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.app.ActivityCompat;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: the state of a set of permissions, checked once. Bit i of each mask is the state of
+ * the permission at position i, so at most 64 permissions can be checked together
+ */
+
+public final class PermissionSnapshot {
+
+    public static final int MAX_PERMISSIONS = Long.SIZE;
+
+    private final String[] mPermissions;
+    private final long mAll;
+    private final long mGranted;
+    private final long mRationale;
+    /**
+     * system calls made to take the snapshot, checks are only counted while {@link PermissionMetrics}
+     * are set
+     */
+    private final int mSystemCalls;
+
+    private PermissionSnapshot(String[] permissions, long granted, long rationale, int systemCalls) {
+        this.mPermissions = permissions;
+        this.mAll = permissions.length == MAX_PERMISSIONS ? -1L : (1L << permissions.length) - 1;
+        this.mGranted = granted;
+        this.mRationale = rationale;
+        this.mSystemCalls = systemCalls;
+    }
+
+    /**
+     * check the permissions, rationale is only checked for the denied ones and only when an
+     * activity is given
+     *
+     * @param context     calling context
+     * @param activity    activity to check rationale with, null to skip it
+     * @param permissions permissions to check, not copied
+     * @return {@link PermissionSnapshot}
+     */
+    @NonNull
+    public static PermissionSnapshot take(@NonNull Context context, @Nullable Activity activity, @NonNull String... permissions) {
+        if (permissions.length > MAX_PERMISSIONS) {
+            throw new IllegalArgumentException("At most " + MAX_PERMISSIONS + " permissions can be checked together");
+        }
+        boolean counting = Metrics.isEnabled();
+        long granted = 0;
+        int systemCalls = 0;
+        for (int i = 0; i < permissions.length; i++) {
+            if (counting && !PermissionCache.isCached(permissions[i])) {
+                systemCalls++;
+            }
+            if (PermissionCache.checkSelfPermission(context, permissions[i]) == PackageManager.PERMISSION_GRANTED) {
+                granted |= 1L << i;
+            }
+        }
+        PermissionSnapshot snapshot = new PermissionSnapshot(permissions, granted, 0, systemCalls);
+        return activity != null ? snapshot.withRationale(activity) : snapshot;
+    }
+
+    /**
+     * check rationale for the denied permissions
+     *
+     * @param activity activity to check rationale with
+     * @return a snapshot with the same states and the rationale
+     */
+    @NonNull
+    PermissionSnapshot withRationale(@NonNull Activity activity) {
+        long rationale = 0;
+        int systemCalls = mSystemCalls;
+        for (int i = 0; i < mPermissions.length; i++) {
+            if (!isGranted(i)) {
+                systemCalls++;
+                if (ActivityCompat.shouldShowRequestPermissionRationale(activity, mPermissions[i])) {
+                    rationale |= 1L << i;
+                }
+            }
+        }
+        return new PermissionSnapshot(mPermissions, mGranted, rationale, systemCalls);
+    }
+
+    int getSystemCalls() {
+        return mSystemCalls;
+    }
+
+    public int size() {
+        return mPermissions.length;
+    }
+
+    public String getPermission(int index) {
+        return mPermissions[index];
+    }
+
+    public boolean isGranted(int index) {
+        return (mGranted & (1L << index)) != 0;
+    }
+
+    public boolean shouldShowRationale(int index) {
+        return (mRationale & (1L << index)) != 0;
+    }
+
+    /**
+     * @return true if every permission is granted
+     */
+    public boolean isAllGranted() {
+        return mGranted == mAll;
+    }
+
+    /**
+     * @return true if a denied permission should show rationale
+     */
+    public boolean shouldShowRationale() {
+        return mRationale != 0;
+    }
+
+    /**
+     * @return number of denied permissions
+     */
+    public int getDeniedCount() {
+        return Long.bitCount(mAll & ~mGranted);
+    }
+
+    @NonNull
+    public PermissionSet getDeniedSet() {
+        return PermissionSet.of(getDeniedPermissions());
+    }
+
+    /**
+     * @return the denied permissions, in request order
+     */
+    @NonNull
+    public String[] getDeniedPermissions() {
+        String[] denied = new String[getDeniedCount()];
+        for (int i = 0, j = 0; i < mPermissions.length; i++) {
+            if (!isGranted(i)) {
+                denied[j++] = mPermissions[i];
+            }
+        }
+        return denied;
+    }
+}
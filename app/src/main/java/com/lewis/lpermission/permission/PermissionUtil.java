@@ -8,13 +8,10 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.support.annotation.NonNull;
-import android.support.v4.app.ActivityCompat;
-import android.support.v4.content.ContextCompat;
 import android.util.Log;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -77,13 +74,7 @@ public class PermissionUtil {
      */
     @TargetApi(value = Build.VERSION_CODES.M)
     public static String[] getDeniedPermissions(Context context, String... permissions) {
-        List<String> denyPermissions = new ArrayList<>();
-        for (String perm : permissions) {
-            if (ActivityCompat.checkSelfPermission(context, perm) != PackageManager.PERMISSION_GRANTED) {
-                denyPermissions.add(perm);
-            }
-        }
-        return denyPermissions.toArray(new String[denyPermissions.size()]);
+        return PermissionSnapshot.take(context, null, permissions).getDeniedPermissions();
     }
 
     /**
@@ -95,49 +86,25 @@ public class PermissionUtil {
      */
     @TargetApi(value = Build.VERSION_CODES.M)
     public static String[] getDeniedPermissions(Activity activity, String... permissions) {
-        List<String> denyPermissions = new ArrayList<>();
-        for (String perm : permissions) {
-            if (activity.checkSelfPermission(perm) != PackageManager.PERMISSION_GRANTED) {
-                denyPermissions.add(perm);
-            }
-        }
-        return denyPermissions.toArray(new String[denyPermissions.size()]);
+        return PermissionSnapshot.take(activity, null, permissions).getDeniedPermissions();
     }
 
+    /**
+     * get the methods of a class annotated with the annotation and request code, resolved once
+     * per class, the returned array is shared and must not be modified
+     *
+     * @param source      class that declares the callbacks
+     * @param annotation  one of the permission annotations
+     * @param requestCode request code
+     * @return methods, empty if none
+     */
     public static Method[] getMethodByRequestCode(@NonNull Class source, @NonNull Class<? extends Annotation> annotation, int requestCode) {
-        List<Method> methods = new ArrayList<>();
-        for (Method method : source.getDeclaredMethods()) {
-            if (method.isAnnotationPresent(annotation)) {
-                if (isSameRequestCode(method, annotation, requestCode)) {
-                    methods.add(method);
-                }
-            }
-        }
-        return methods.toArray(new Method[methods.size()]);
+        return CallbackIndex.of(source).get(annotation, requestCode);
     }
 
     public static Method getMethodWithRequestCode(@NonNull Class source, @NonNull Class<? extends Annotation> annotation, int requestCode) {
-        for (Method method : source.getDeclaredMethods()) {
-            if (method.getAnnotation(annotation) != null) {
-                if (isSameRequestCode(method, annotation, requestCode)) {
-                    return method;
-                }
-            }
-        }
-        return null;
-    }
-
-    private static boolean isSameRequestCode(@NonNull Method method, @NonNull Class<? extends Annotation> annotation, int requestCode) {
-        if (PermissionGranted.class.equals(annotation)) {
-            return requestCode == method.getAnnotation(PermissionGranted.class).value();
-        } else if (PermissionDenied.class.equals(annotation)) {
-            return requestCode == method.getAnnotation(PermissionDenied.class).value();
-        } else if (PermissionRationale.class.equals(annotation)) {
-            return requestCode == method.getAnnotation(PermissionRationale.class).value();
-        } else if (PermissionNeverAskAgain.class.equals(annotation)) {
-            return requestCode == method.getAnnotation(PermissionNeverAskAgain.class).value();
-        }
-        return false;
+        Method[] methods = getMethodByRequestCode(source, annotation, requestCode);
+        return methods.length > 0 ? methods[0] : null;
     }
 
     /**
@@ -162,7 +129,8 @@ public class PermissionUtil {
     }
 
     /**
-     * check if the calling context has a set of permission.
+     * check if the calling context has a set of permission, known states are answered by
+     * {@link PermissionCache}.
      *
      * @param context the calling context
      * @param perms   one or more permissions, such as {@link Manifest.permission#CAMERA}.
@@ -182,7 +150,7 @@ public class PermissionUtil {
             throw new IllegalArgumentException("Can't check permission for null context");
         }
         for (String permission : perms) {
-            if (ContextCompat.checkSelfPermission(context, permission) != PackageManager.PERMISSION_GRANTED) {
+            if (PermissionCache.checkSelfPermission(context, permission) != PackageManager.PERMISSION_GRANTED) {
                 return false;
             }
         }
@@ -0,0 +1,168 @@
+package com.lewis.lpermission.google.camera;
+
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Message;
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: state transitions of the buffers of {@link FrameProcessor}. The worker is a mocked
+ * handler, its messages are handled by the test. The mockable android.jar reports 0 bits per
+ * pixel, so the buffers are empty and only told apart by identity
+ */
+
+public class FrameProcessorTest {
+
+    private final List<Message> mMessages = new ArrayList<>();
+    private final List<PreviewFrame> mFrames = new ArrayList<>();
+    private Camera mCamera;
+    private FrameProcessor mProcessor;
+    private List<byte[]> mBuffers;
+
+    @Before
+    public void setUp() {
+        mCamera = mockCamera();
+        Handler handler = mock(Handler.class);
+        when(handler.obtainMessage(anyInt(), any())).thenAnswer(new Answer<Message>() {
+            @Override
+            public Message answer(InvocationOnMock invocation) {
+                Message message = new Message();
+                message.what = (Integer) invocation.getArguments()[0];
+                message.obj = invocation.getArguments()[1];
+                mMessages.add(message);
+                return message;
+            }
+        });
+        mProcessor = new FrameProcessor(new CameraPreview.FrameConsumer() {
+            @Override
+            public void onFrame(@NonNull PreviewFrame frame) {
+                mFrames.add(frame);
+            }
+        }, handler);
+        mProcessor.start(mCamera);
+        ArgumentCaptor<byte[]> buffers = ArgumentCaptor.forClass(byte[].class);
+        verify(mCamera, times(3)).addCallbackBuffer(buffers.capture());
+        mBuffers = buffers.getAllValues();
+    }
+
+    @Test
+    public void start_givesEveryBufferToTheCamera() {
+        assertNotSame(mBuffers.get(0), mBuffers.get(1));
+        assertNotSame(mBuffers.get(1), mBuffers.get(2));
+        assertNotSame(mBuffers.get(0), mBuffers.get(2));
+    }
+
+    @Test
+    public void frame_goesBackToTheCameraOnceReleased() {
+        PreviewFrame frame = deliver(0);
+        assertSame(mBuffers.get(0), frame.getData());
+        assertEquals(4, frame.getWidth());
+        assertEquals(2, frame.getHeight());
+        verifyGiven(0, 1);
+        frame.release();
+        verifyGiven(0, 2);
+        // a frame is only released once
+        frame.release();
+        verifyGiven(0, 2);
+    }
+
+    @Test
+    public void frame_whileOneIsPending_isDropped() {
+        mProcessor.onPreviewFrame(mBuffers.get(0), mCamera);
+        mProcessor.onPreviewFrame(mBuffers.get(1), mCamera);
+        assertEquals(1, mMessages.size());
+        verifyGiven(1, 2);
+        mProcessor.handleMessage(mMessages.get(0));
+        // the worker is free again
+        mProcessor.onPreviewFrame(mBuffers.get(2), mCamera);
+        assertEquals(2, mMessages.size());
+    }
+
+    @Test
+    public void frame_ofAnotherCameraOrBuffer_isIgnored() {
+        mProcessor.onPreviewFrame(mBuffers.get(0), mockCamera());
+        mProcessor.onPreviewFrame(new byte[0], mCamera);
+        assertTrue(mMessages.isEmpty());
+    }
+
+    @Test
+    public void pendingFrame_isDroppedOnStop() {
+        mProcessor.onPreviewFrame(mBuffers.get(0), mCamera);
+        mProcessor.stop();
+        mProcessor.handleMessage(mMessages.get(0));
+        assertTrue(mFrames.isEmpty());
+        mProcessor.start(mCamera);
+        verifyGiven(0, 2);
+    }
+
+    @Test
+    public void consumedFrame_isOnlyGivenBackOnceReleased() {
+        PreviewFrame frame = deliver(0);
+        mProcessor.stop();
+        mProcessor.start(mCamera);
+        verifyGiven(0, 1);
+        verifyGiven(1, 2);
+        verifyGiven(2, 2);
+        frame.release();
+        verifyGiven(0, 2);
+    }
+
+    @Test
+    public void frameReleasedAfterStop_staysWithTheProcessor() {
+        PreviewFrame frame = deliver(0);
+        mProcessor.stop();
+        frame.release();
+        verifyGiven(0, 1);
+        mProcessor.start(mCamera);
+        verifyGiven(0, 2);
+    }
+
+    private PreviewFrame deliver(int buffer) {
+        mProcessor.onPreviewFrame(mBuffers.get(buffer), mCamera);
+        mProcessor.handleMessage(mMessages.get(mMessages.size() - 1));
+        return mFrames.get(mFrames.size() - 1);
+    }
+
+    /**
+     * @param times how often the buffer was given to the camera so far
+     */
+    private void verifyGiven(int buffer, int times) {
+        verify(mCamera, times(times)).addCallbackBuffer(same(mBuffers.get(buffer)));
+    }
+
+    private static Camera mockCamera() {
+        Camera.Size size = mock(Camera.Size.class);
+        size.width = 4;
+        size.height = 2;
+        Camera.Parameters parameters = mock(Camera.Parameters.class);
+        when(parameters.getPreviewSize()).thenReturn(size);
+        when(parameters.getPreviewFormat()).thenReturn(ImageFormat.NV21);
+        Camera camera = mock(Camera.class);
+        when(camera.getParameters()).thenReturn(parameters);
+        return camera;
+    }
+}
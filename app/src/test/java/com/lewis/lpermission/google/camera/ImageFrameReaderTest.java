@@ -0,0 +1,112 @@
+package com.lewis.lpermission.google.camera;
+
+import android.media.Image;
+import android.media.ImageReader;
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: the frame pool of {@link ImageFrameReader}, two frames handed out in turn. The
+ * reader is mocked and every image is a 2x2 frame
+ */
+
+public class ImageFrameReaderTest {
+
+    private static final int SIZE = 2;
+
+    private final List<PreviewFrame> mFrames = new ArrayList<>();
+    private ImageReader mReader;
+    private ImageFrameReader mFrameReader;
+
+    @Before
+    public void setUp() {
+        mReader = mock(ImageReader.class);
+        mFrameReader = new ImageFrameReader(new CameraPreview.FrameConsumer() {
+            @Override
+            public void onFrame(@NonNull PreviewFrame frame) {
+                mFrames.add(frame);
+            }
+        }, SIZE, SIZE, mReader);
+    }
+
+    @Test
+    public void image_whileEveryFrameIsHeld_isDropped() {
+        deliver();
+        deliver();
+        Image dropped = deliver();
+        assertEquals(2, mFrames.size());
+        assertNotSame(mFrames.get(0), mFrames.get(1));
+        // the image is closed all the same
+        verify(dropped).close();
+    }
+
+    @Test
+    public void frame_releasedTwice_isFreedOnce() {
+        deliver();
+        deliver();
+        PreviewFrame first = mFrames.get(0);
+        first.release();
+        first.release();
+        deliver();
+        assertSame(first, mFrames.get(2));
+        // the second release did not free the frame again
+        deliver();
+        assertEquals(3, mFrames.size());
+    }
+
+    @Test
+    public void frame_releasedAfterReuse_goesBackOnce() {
+        deliver();
+        PreviewFrame frame = mFrames.get(0);
+        frame.release();
+        deliver();
+        assertSame(frame, mFrames.get(1));
+        frame.release();
+        frame.release();
+        deliver();
+        deliver();
+        // the frame was free once, then the other frame was taken
+        assertEquals(4, mFrames.size());
+        assertSame(frame, mFrames.get(2));
+        assertNotSame(frame, mFrames.get(3));
+        deliver();
+        assertEquals(4, mFrames.size());
+    }
+
+    /**
+     * @return the image, once the frame reader handled it
+     */
+    private Image deliver() {
+        Image image = mock(Image.class);
+        Image.Plane[] planes = {plane(1), plane(2), plane(2)};
+        when(image.getWidth()).thenReturn(SIZE);
+        when(image.getHeight()).thenReturn(SIZE);
+        when(image.getPlanes()).thenReturn(planes);
+        when(mReader.acquireLatestImage()).thenReturn(image);
+        mFrameReader.onImageAvailable(mReader);
+        return image;
+    }
+
+    private static Image.Plane plane(int pixelStride) {
+        Image.Plane plane = mock(Image.Plane.class);
+        when(plane.getBuffer()).thenReturn(ByteBuffer.allocate(SIZE * SIZE));
+        when(plane.getRowStride()).thenReturn(SIZE);
+        when(plane.getPixelStride()).thenReturn(pixelStride);
+        return plane;
+    }
+}
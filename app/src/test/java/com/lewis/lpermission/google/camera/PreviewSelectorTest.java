@@ -0,0 +1,114 @@
+package com.lewis.lpermission.google.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: size and frame rate edge cases of {@link PreviewSelector}
+ */
+
+public class PreviewSelectorTest {
+
+    private static final String CAMERA_ID = "0";
+    private static final int[] WIDTHS = {640, 1280, 1920, 3840};
+    private static final int[] HEIGHTS = {480, 720, 1080, 2160};
+    private static final int[] NO_FPS = {};
+
+    private final PreviewSelector mSelector = new PreviewSelector(1920, 1080, 30);
+
+    @Test
+    public void select_smallestSizeCoveringTheSurface() {
+        PreviewSelector.Selection selection = select(mSelector, 1000, 560);
+        assertEquals(1280, selection.width);
+        assertEquals(720, selection.height);
+    }
+
+    @Test
+    public void select_portraitSurface_comparedInLandscape() {
+        PreviewSelector.Selection selection = select(mSelector, 560, 1000);
+        assertEquals(1280, selection.width);
+        assertEquals(720, selection.height);
+    }
+
+    @Test
+    public void select_surfaceAboveTheMaximum_largestSizeWithin() {
+        PreviewSelector selector = new PreviewSelector(1280, 720, 30);
+        PreviewSelector.Selection selection = select(selector, 2560, 1440);
+        assertEquals(1280, selection.width);
+        assertEquals(720, selection.height);
+    }
+
+    @Test
+    public void select_everySizeAboveTheMaximum_smallestSize() {
+        PreviewSelector selector = new PreviewSelector(320, 240, 30);
+        PreviewSelector.Selection selection = select(selector, 1000, 560);
+        assertEquals(640, selection.width);
+        assertEquals(480, selection.height);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void select_noSize_throws() {
+        mSelector.select(CAMERA_ID, PreviewSelector.CAMERA2_FPS_SCALE, 1000, 560,
+                new int[0], new int[0], NO_FPS, NO_FPS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void create_invalidLimits_throws() {
+        new PreviewSelector(1920, 0, 30);
+    }
+
+    @Test
+    public void select_lowestWidestRangeReachingTheTarget() {
+        PreviewSelector.Selection selection = mSelector.select(CAMERA_ID, PreviewSelector.CAMERA2_FPS_SCALE,
+                1000, 560, WIDTHS, HEIGHTS, new int[]{15, 30, 15, 7}, new int[]{15, 30, 30, 60});
+        assertTrue(selection.hasFpsRange);
+        assertEquals(15, selection.minFps);
+        assertEquals(30, selection.maxFps);
+    }
+
+    @Test
+    public void select_camera1Units() {
+        PreviewSelector.Selection selection = mSelector.select(CAMERA_ID, PreviewSelector.CAMERA1_FPS_SCALE,
+                1000, 560, WIDTHS, HEIGHTS, new int[]{15000, 30000, 7000}, new int[]{15000, 30000, 60000});
+        assertEquals(30000, selection.minFps);
+        assertEquals(30000, selection.maxFps);
+    }
+
+    @Test
+    public void select_noRangeReachesTheTarget_fastestRange() {
+        PreviewSelector.Selection selection = mSelector.select(CAMERA_ID, PreviewSelector.CAMERA2_FPS_SCALE,
+                1000, 560, WIDTHS, HEIGHTS, new int[]{5, 10, 15}, new int[]{15, 24, 24});
+        assertEquals(10, selection.minFps);
+        assertEquals(24, selection.maxFps);
+    }
+
+    @Test
+    public void select_noRange() {
+        assertFalse(select(mSelector, 1000, 560).hasFpsRange);
+    }
+
+    @Test
+    public void get_cachedForTheSameSurfaceSize() {
+        PreviewSelector.Selection selection = select(mSelector, 1000, 560);
+        assertSame(selection, mSelector.get(CAMERA_ID, PreviewSelector.CAMERA2_FPS_SCALE, 1000, 560));
+        assertNull(mSelector.get(CAMERA_ID, PreviewSelector.CAMERA2_FPS_SCALE, 560, 1000));
+    }
+
+    @Test
+    public void get_notSharedBetweenCameraApis() {
+        select(mSelector, 1000, 560);
+        assertNull(mSelector.get(CAMERA_ID, PreviewSelector.CAMERA1_FPS_SCALE, 1000, 560));
+    }
+
+    private static PreviewSelector.Selection select(PreviewSelector selector, int width, int height) {
+        return selector.select(CAMERA_ID, PreviewSelector.CAMERA2_FPS_SCALE, width, height,
+                WIDTHS, HEIGHTS, NO_FPS, NO_FPS);
+    }
+}
@@ -0,0 +1,86 @@
+package com.lewis.lpermission.permission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: cost of finding and calling the callbacks of a host, see benchmark.gradle for the
+ * generated hosts and how to run it
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CallbackDispatchBenchmark {
+
+    /**
+     * number of methods of the host
+     */
+    @Param({"10", "100", "1000"})
+    public int methods;
+
+    /**
+     * Generated hosts have a dispatcher, Reflective ones don't
+     */
+    @Param({"Generated", "Reflective"})
+    public String host;
+
+    private Class<?> mClass;
+    private Object mHost;
+    private int mRequestCode;
+
+    @Setup
+    public void setUp() throws Exception {
+        mClass = Class.forName("com.lewis.lpermission.permission.hosts." + host + "Host" + methods);
+        mHost = mClass.newInstance();
+        // a request code in the middle of the declared ones
+        mRequestCode = methods / 8;
+    }
+
+    /**
+     * the scan every dispatch used to do, kept as a baseline
+     */
+    @Benchmark
+    public Method[] declaredMethodsScan() {
+        List<Method> found = new ArrayList<>();
+        for (Method method : mClass.getDeclaredMethods()) {
+            PermissionGranted granted = method.getAnnotation(PermissionGranted.class);
+            if (granted != null && granted.value() == mRequestCode) {
+                found.add(method);
+            }
+        }
+        return found.toArray(new Method[found.size()]);
+    }
+
+    @Benchmark
+    public Method[] getMethodByRequestCode() {
+        return PermissionUtil.getMethodByRequestCode(mClass, PermissionGranted.class, mRequestCode);
+    }
+
+    /**
+     * what LPermission does for every callback it calls
+     */
+    @Benchmark
+    public void dispatch() {
+        CallbackIndex.of(mClass).dispatch(mHost, PermissionDispatcher.GRANTED, mRequestCode, null);
+    }
+}
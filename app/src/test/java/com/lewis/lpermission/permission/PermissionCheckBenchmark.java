@@ -0,0 +1,135 @@
+package com.lewis.lpermission.permission;
+
+import android.app.Activity;
+import android.content.pm.PackageManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: cost of checking permissions and evaluating a result, every other permission is
+ * denied by the stand-in activity
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PermissionCheckBenchmark {
+
+    private static final int REQUEST_CODE = 1;
+
+    @Param({"1", "5", "20"})
+    public int permissions;
+
+    /**
+     * true to bypass {@link PermissionCache}
+     */
+    @Param({"false", "true"})
+    public boolean strict;
+
+    private StandInActivity mActivity;
+    private String[] mPermissions;
+    private int[] mGrantResults;
+    /**
+     * host that has every permission
+     */
+    private StandInActivity mGrantedActivity;
+    private PermissionRequest mRequest;
+
+    @Setup
+    public void setUp() {
+        mActivity = new StandInActivity();
+        mPermissions = new String[permissions];
+        mGrantResults = new int[permissions];
+        for (int i = 0; i < permissions; i++) {
+            mPermissions[i] = "android.permission.BENCHMARK_" + i;
+            if (i % 2 == 1) {
+                mActivity.deniedPermissions.add(mPermissions[i]);
+                mGrantResults[i] = PackageManager.PERMISSION_DENIED;
+            }
+        }
+        mGrantedActivity = new StandInActivity();
+        mRequest = LPermission.with(mGrantedActivity).requestCode(REQUEST_CODE).permission(mPermissions).build();
+        PermissionCache.setStrictMode(strict);
+    }
+
+    @TearDown
+    public void tearDown() {
+        PermissionCache.setStrictMode(false);
+        PermissionCache.invalidate();
+    }
+
+    @Benchmark
+    public String[] getDeniedPermissions() {
+        return PermissionUtil.getDeniedPermissions(mActivity, mPermissions);
+    }
+
+    @Benchmark
+    public PermissionSnapshot snapshot() {
+        return PermissionSnapshot.take(mActivity, mActivity, mPermissions);
+    }
+
+    @Benchmark
+    public void onPermissionResult() {
+        LPermission.onPermissionResult(mActivity, REQUEST_CODE, mPermissions, mGrantResults);
+    }
+
+    /**
+     * the mockable android.jar reports SDK_INT 0, so only the dispatch of the granted callbacks
+     * is measured by the two request benchmarks
+     */
+    @Benchmark
+    public void request() {
+        LPermission.with(mGrantedActivity).requestCode(REQUEST_CODE).permission(mPermissions).request();
+    }
+
+    @Benchmark
+    public void builtRequest() {
+        mRequest.execute();
+    }
+
+    public static class StandInActivity extends Activity {
+
+        final Set<String> deniedPermissions = new HashSet<>();
+        int calls;
+
+        @Override
+        public int checkPermission(String permission, int pid, int uid) {
+            return deniedPermissions.contains(permission) ? PackageManager.PERMISSION_DENIED : PackageManager.PERMISSION_GRANTED;
+        }
+
+        @PermissionGranted(REQUEST_CODE)
+        void granted() {
+            calls++;
+        }
+
+        @PermissionDenied(REQUEST_CODE)
+        void denied() {
+            calls++;
+        }
+
+        @PermissionNeverAskAgain(REQUEST_CODE)
+        void neverAskAgain() {
+            calls++;
+        }
+    }
+}
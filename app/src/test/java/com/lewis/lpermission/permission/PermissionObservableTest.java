@@ -0,0 +1,181 @@
+package com.lewis.lpermission.permission;
+
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowActivity;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: cancellation of a subscription of a {@link FragmentActivity}. Permissions are
+ * denied until granted, the main looper is paused so requests wait for the PermissionFragment
+ * to flush them, and the system answer is given by the test
+ */
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class PermissionObservableTest {
+
+    private static final String[] CAMERA = {Manifest.permission.CAMERA};
+    private static final String[] CAMERA_AND_CONTACTS = {Manifest.permission.CAMERA, Manifest.permission.READ_CONTACTS};
+
+    private ActivityController<FragmentActivity> mController;
+    private FragmentActivity mActivity;
+
+    @Before
+    public void setUp() {
+        PermissionCache.setStrictMode(true);
+        mController = Robolectric.buildActivity(FragmentActivity.class).setup();
+        mActivity = mController.get();
+        ShadowLooper.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+        PermissionCache.setStrictMode(false);
+        PermissionCache.invalidate();
+    }
+
+    @Test
+    public void subscribe_grantedPermissions_completesRightAway() {
+        shadowOf(RuntimeEnvironment.application).grantPermissions(CAMERA_AND_CONTACTS);
+        RecordingObserver observer = new RecordingObserver();
+        PermissionObservable.Subscription subscription = observe(CAMERA_AND_CONTACTS).subscribe(observer);
+        assertEquals(Arrays.asList(Manifest.permission.CAMERA + "=" + PermissionResult.GRANTED,
+                Manifest.permission.READ_CONTACTS + "=" + PermissionResult.GRANTED), observer.outcomes);
+        assertEquals(1, observer.completions);
+        ShadowLooper.runUiThreadTasks();
+        assertNull(shadowOf(mActivity).getLastRequestedPermission());
+        // completed already
+        subscription.cancel();
+        assertFalse(subscription.isCancelled());
+    }
+
+    @Test
+    public void cancel_beforeTheRequestIsSent_asksNothing() {
+        RecordingObserver observer = new RecordingObserver();
+        PermissionObservable.Subscription subscription = observe(CAMERA).subscribe(observer);
+        PermissionFragment fragment = PermissionFragment.find(mActivity);
+        assertNotNull(fragment);
+        assertTrue(fragment.isPending(subscription));
+        subscription.cancel();
+        assertTrue(subscription.isCancelled());
+        assertFalse(fragment.isPending(subscription));
+        ShadowLooper.runUiThreadTasks();
+        assertNull(shadowOf(mActivity).getLastRequestedPermission());
+        assertTrue(observer.outcomes.isEmpty());
+        assertEquals(0, observer.completions);
+    }
+
+    @Test
+    public void cancel_whileTheSystemAsks_emitsNothing() {
+        RecordingObserver observer = new RecordingObserver();
+        PermissionObservable.Subscription subscription = observe(CAMERA).subscribe(observer);
+        ShadowLooper.runUiThreadTasks();
+        ShadowActivity.PermissionsRequest request = shadowOf(mActivity).getLastRequestedPermission();
+        assertNotNull(request);
+        subscription.cancel();
+        assertFalse(PermissionFragment.find(mActivity).isPending(subscription));
+        answer(request, PackageManager.PERMISSION_GRANTED);
+        assertTrue(observer.outcomes.isEmpty());
+        assertEquals(0, observer.completions);
+    }
+
+    @Test
+    public void subscriptions_shareOneSystemRequest() {
+        RecordingObserver camera = new RecordingObserver();
+        RecordingObserver cameraAndContacts = new RecordingObserver();
+        observe(CAMERA).subscribe(camera);
+        observe(CAMERA_AND_CONTACTS).subscribe(cameraAndContacts);
+        ShadowLooper.runUiThreadTasks();
+        ShadowActivity.PermissionsRequest request = shadowOf(mActivity).getLastRequestedPermission();
+        assertArrayEquals(CAMERA_AND_CONTACTS, request.requestedPermissions);
+        answer(request, PackageManager.PERMISSION_GRANTED);
+        assertEquals(1, camera.outcomes.size());
+        assertEquals(1, camera.completions);
+        assertEquals(2, cameraAndContacts.outcomes.size());
+        assertEquals(1, cameraAndContacts.completions);
+    }
+
+    @Test
+    public void request_keepsThePermissionOrder() {
+        String[] contactsAndCamera = {Manifest.permission.READ_CONTACTS, Manifest.permission.CAMERA};
+        RecordingObserver observer = new RecordingObserver();
+        observe(contactsAndCamera).subscribe(observer);
+        ShadowLooper.runUiThreadTasks();
+        ShadowActivity.PermissionsRequest request = shadowOf(mActivity).getLastRequestedPermission();
+        assertArrayEquals(contactsAndCamera, request.requestedPermissions);
+        answer(request, PackageManager.PERMISSION_GRANTED);
+        assertEquals(Arrays.asList(Manifest.permission.READ_CONTACTS + "=" + PermissionResult.GRANTED,
+                Manifest.permission.CAMERA + "=" + PermissionResult.GRANTED), observer.outcomes);
+    }
+
+    @Test
+    public void destroy_cancelsTheSubscription() {
+        RecordingObserver observer = new RecordingObserver();
+        PermissionObservable.Subscription subscription = observe(CAMERA).subscribe(observer);
+        mController.pause().stop().destroy();
+        assertTrue(subscription.isCancelled());
+        assertTrue(observer.outcomes.isEmpty());
+    }
+
+    private PermissionObservable observe(String[] permissions) {
+        return LPermission.with(mActivity).requestCode(1).permission(permissions).observe();
+    }
+
+    /**
+     * the system answers the request with the same result for every permission
+     */
+    private void answer(ShadowActivity.PermissionsRequest request, int result) {
+        int[] results = new int[request.requestedPermissions.length];
+        Arrays.fill(results, result);
+        mActivity.onRequestPermissionsResult(request.requestCode, request.requestedPermissions, results);
+    }
+
+    private static class RecordingObserver implements PermissionObservable.Observer {
+
+        final List<String> outcomes = new ArrayList<>();
+        int completions;
+
+        @Override
+        public void onNext(@NonNull String permission, int outcome) {
+            outcomes.add(permission + "=" + outcome);
+        }
+
+        @Override
+        public void onError(@NonNull Throwable error) {
+            throw new AssertionError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            completions++;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.lewis.lpermission.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Author: lewis
+ * Date: 2026/10/18.
+ * Description: generates a PermissionDispatcher for every class that declares permission callbacks,
+ * so LPermission can call them directly instead of through reflection. The dispatcher also calls
+ * the callbacks inherited from superclasses
+ */
+
+public class PermissionProcessor extends AbstractProcessor {
+
+    private static final String PACKAGE = "com.lewis.lpermission.permission";
+    private static final String DISPATCHER = PACKAGE + ".PermissionDispatcher";
+    private static final String RESULT = PACKAGE + ".PermissionResult";
+    private static final String SUFFIX = "_PermissionDispatcher";
+
+    /**
+     * the callback annotations, at the position of their PermissionDispatcher type
+     */
+    private static final String[] ANNOTATIONS = {
+            PACKAGE + ".PermissionGranted",
+            PACKAGE + ".PermissionDenied",
+            PACKAGE + ".PermissionRationale",
+            PACKAGE + ".PermissionNeverAskAgain"
+    };
+
+    /**
+     * names of the PermissionDispatcher types
+     */
+    private static final String[] TYPES = {
+            "GRANTED", "DENIED", "RATIONALE", "NEVER_ASK_AGAIN", "PARTIALLY_GRANTED"
+    };
+    private static final int PARTIALLY_GRANTED = 4;
+
+    private Elements mElements;
+    private Types mTypes;
+    private Filer mFiler;
+    private Messager mMessager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        mElements = processingEnv.getElementUtils();
+        mTypes = processingEnv.getTypeUtils();
+        mFiler = processingEnv.getFiler();
+        mMessager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> types = new LinkedHashSet<>();
+        Collections.addAll(types, ANNOTATIONS);
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, List<Callback>> hosts = new LinkedHashMap<>();
+        for (int type = 0; type < ANNOTATIONS.length; type++) {
+            TypeElement annotation = mElements.getTypeElement(ANNOTATIONS[type]);
+            if (annotation == null) continue;
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.METHOD) continue;
+                ExecutableElement method = (ExecutableElement) element;
+                if (!isValid(method)) continue;
+                TypeElement host = (TypeElement) method.getEnclosingElement();
+                List<Callback> callbacks = hosts.get(host);
+                if (callbacks == null) {
+                    callbacks = new ArrayList<>();
+                    hosts.put(host, callbacks);
+                }
+                add(callbacks, type, method);
+            }
+        }
+        for (Map.Entry<TypeElement, List<Callback>> entry : hosts.entrySet()) {
+            addInherited(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<TypeElement, List<Callback>> entry : hosts.entrySet()) {
+            if (isAccessible(entry.getKey(), entry.getValue())) {
+                write(entry.getKey(), entry.getValue());
+            }
+        }
+        return false;
+    }
+
+    private void add(List<Callback> callbacks, int type, ExecutableElement method) {
+        int requestCode = (Integer) valueOf(method, ANNOTATIONS[type], "value");
+        callbacks.add(new Callback(type, requestCode, method));
+        if (type == 0 && (Boolean) valueOf(method, ANNOTATIONS[type], "partial")) {
+            callbacks.add(new Callback(PARTIALLY_GRANTED, requestCode, method));
+        }
+    }
+
+    /**
+     * add the callbacks of the superclasses, a callback overridden by an annotated method is
+     * left out, as it is at runtime
+     */
+    private void addInherited(TypeElement host, List<Callback> callbacks) {
+        List<ExecutableElement> annotated = new ArrayList<>();
+        for (Callback callback : callbacks) {
+            annotated.add(callback.method);
+        }
+        for (TypeElement type = superclassOf(host); type != null; type = superclassOf(type)) {
+            for (Element element : type.getEnclosedElements()) {
+                if (element.getKind() != ElementKind.METHOD) continue;
+                ExecutableElement method = (ExecutableElement) element;
+                boolean overridden = false;
+                for (ExecutableElement override : annotated) {
+                    if (mElements.overrides(override, method, host)) {
+                        overridden = true;
+                        break;
+                    }
+                }
+                if (overridden) continue;
+                boolean isCallback = false;
+                for (int kind = 0; kind < ANNOTATIONS.length; kind++) {
+                    if (hasAnnotation(method, ANNOTATIONS[kind])) {
+                        add(callbacks, kind, method);
+                        isCallback = true;
+                    }
+                }
+                if (isCallback) {
+                    annotated.add(method);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the superclass, null once it is a framework class, which declares no callbacks
+     */
+    private static TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        String name = element.getQualifiedName().toString();
+        if (name.startsWith("android.") || name.startsWith("java.") || name.startsWith("javax.")) {
+            return null;
+        }
+        return element;
+    }
+
+    private static boolean hasAnnotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * a callback takes no parameter or a PermissionResult, reflection would fail as well
+     */
+    private boolean isValid(ExecutableElement method) {
+        if (hasValidParameters(method)) {
+            return true;
+        }
+        mMessager.printMessage(Diagnostic.Kind.ERROR,
+                method.getSimpleName() + "() must take no parameter or a PermissionResult", method);
+        return false;
+    }
+
+    private boolean hasValidParameters(ExecutableElement method) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        return parameters.isEmpty() || (parameters.size() == 1
+                && mTypes.erasure(parameters.get(0).asType()).toString().equals(RESULT));
+    }
+
+    private Object valueOf(ExecutableElement method, String annotation, String name) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (!type.getQualifiedName().contentEquals(annotation)) continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                    : mElements.getElementValuesWithDefaults(mirror).entrySet()) {
+                if (value.getKey().getSimpleName().contentEquals(name)) {
+                    return value.getValue().getValue();
+                }
+            }
+        }
+        throw new IllegalStateException(annotation + " has no " + name);
+    }
+
+    /**
+     * the generated dispatcher lives in the package of the host, it can only call what is visible
+     * there; hosts that can't be called directly keep using reflection at runtime
+     */
+    private boolean isAccessible(TypeElement host, List<Callback> callbacks) {
+        if (host.getKind() != ElementKind.CLASS) {
+            return note(host, "is not a class");
+        }
+        for (Element type = host; type instanceof TypeElement; type = type.getEnclosingElement()) {
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                return note(host, "is private");
+            }
+        }
+        Element hostPackage = packageOf(host);
+        for (Callback callback : callbacks) {
+            Set<Modifier> modifiers = callback.method.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return note(host, callback.method.getSimpleName() + "() is private");
+            }
+            if (!modifiers.contains(Modifier.PUBLIC) && !packageOf(callback.method).equals(hostPackage)) {
+                return note(host, callback.method.getSimpleName() + "() is not visible in its package");
+            }
+            if (callback.method.getEnclosingElement() != host && !hasValidParameters(callback.method)) {
+                return note(host, callback.method.getSimpleName() + "() has unsupported parameters");
+            }
+        }
+        return true;
+    }
+
+    private boolean note(TypeElement host, String reason) {
+        mMessager.printMessage(Diagnostic.Kind.NOTE,
+                host.getQualifiedName() + " " + reason + ", its permission callbacks use reflection", host);
+        return false;
+    }
+
+    private void write(TypeElement host, List<Callback> callbacks) {
+        String packageName = ((PackageElement) packageOf(host)).getQualifiedName().toString();
+        String binaryName = mElements.getBinaryName(host).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String hostType = mTypes.erasure(host.asType()).toString();
+
+        List<TreeMap<Integer, List<Callback>>> types = new ArrayList<>(TYPES.length);
+        for (int i = 0; i < TYPES.length; i++) {
+            types.add(new TreeMap<Integer, List<Callback>>());
+        }
+        boolean acceptsResult = false;
+        for (Callback callback : callbacks) {
+            TreeMap<Integer, List<Callback>> codes = types.get(callback.type);
+            List<Callback> sameCode = codes.get(callback.requestCode);
+            if (sameCode == null) {
+                sameCode = new ArrayList<>(1);
+                codes.put(callback.requestCode, sameCode);
+            }
+            sameCode.add(callback);
+            acceptsResult |= callback.acceptsResult();
+        }
+
+        StringBuilder source = new StringBuilder();
+        source.append("// Generated code from LPermission. Do not modify!\n");
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(simpleName)
+                .append(" implements ").append(DISPATCHER).append('<').append(hostType).append("> {\n\n")
+                .append("    @Override\n")
+                .append("    public boolean acceptsResult() {\n")
+                .append("        return ").append(acceptsResult).append(";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public void dispatch(").append(hostType).append(" target, int type, int requestCode, ")
+                .append(RESULT).append(" result) {\n")
+                .append("        switch (type) {\n");
+        for (int type = 0; type < TYPES.length; type++) {
+            TreeMap<Integer, List<Callback>> codes = types.get(type);
+            if (codes.isEmpty()) continue;
+            source.append("            case ").append(DISPATCHER).append('.').append(TYPES[type]).append(":\n")
+                    .append("                switch (requestCode) {\n");
+            for (Map.Entry<Integer, List<Callback>> code : codes.entrySet()) {
+                source.append("                    case ").append(code.getKey()).append(":\n");
+                for (Callback callback : code.getValue()) {
+                    source.append("                        ")
+                            .append(callback.method.getModifiers().contains(Modifier.STATIC)
+                                    ? mTypes.erasure(callback.method.getEnclosingElement().asType()).toString()
+                                    : "target")
+                            .append('.').append(callback.method.getSimpleName())
+                            .append(callback.acceptsResult() ? "(result);\n" : "();\n");
+                }
+                source.append("                        break;\n");
+            }
+            source.append("                }\n")
+                    .append("                break;\n");
+        }
+        source.append("        }\n    }\n}\n");
+
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try {
+            Writer writer = mFiler.createSourceFile(qualifiedName, host).openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            mMessager.printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + qualifiedName + ": " + e.getMessage(), host);
+        }
+    }
+
+    private static Element packageOf(Element element) {
+        while (element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return element;
+    }
+
+    private static final class Callback {
+        final int type;
+        final int requestCode;
+        final ExecutableElement method;
+
+        Callback(int type, int requestCode, ExecutableElement method) {
+            this.type = type;
+            this.requestCode = requestCode;
+            this.method = method;
+        }
+
+        boolean acceptsResult() {
+            return !method.getParameters().isEmpty();
+        }
+    }
+}